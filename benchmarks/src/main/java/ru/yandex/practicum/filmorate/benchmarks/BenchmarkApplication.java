@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipGraph;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.like.LikeMatrix;
+import ru.yandex.practicum.filmorate.dal.like.LikeRepository;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Контекст приложения над отдельной H2 в памяти и генерация данных для бенчмарков, в том числе
+ * для структур в памяти, которые строятся без базы данных.
+ * Кэш результатов H2 отключён, иначе повторный одинаковый запрос к неизменённым таблицам
+ * не доходит до выполнения.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Контекст без веб-сервера — для JMH-бенчмарков слоя хранения.
+     * Дополнительные свойства задаются в виде ключ=значение.
+     */
+    static ConfigurableApplicationContext start(String database, String... properties) {
+        return run(database, WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Приложение целиком со встроенным Tomcat на случайном свободном порту.
+     * Дополнительные свойства задаются в виде ключ=значение.
+     */
+    static ConfigurableApplicationContext startServer(String database, String... properties) {
+        return run(database, WebApplicationType.SERVLET, Stream.concat(Stream.of("server.port=0"),
+                Arrays.stream(properties)).toArray(String[]::new));
+    }
+
+    /**
+     * Пользователи, фильмы с двумя жанрами и по likesPerUser лайков от каждого пользователя.
+     * После вставки перезагружает структуры в памяти, которые строятся при старте.
+     */
+    static void fill(ConfigurableApplicationContext context, int users, int films, int likesPerUser) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        insertUsers(jdbc, users);
+        insertFilms(jdbc, films);
+        insertLikes(jdbc, users, films, likesPerUser);
+        reload(context);
+    }
+
+    static void insertUsers(JdbcTemplate jdbc, int users) {
+        jdbc.update("""
+                INSERT INTO users (email, login, name, birthday)
+                SELECT 'user' || X || '@bench.ru', 'user' || X, 'user', DATE '1990-01-01' FROM SYSTEM_RANGE(1, ?)
+                """, users);
+    }
+
+    static void insertFilms(JdbcTemplate jdbc, int films) {
+        jdbc.update("""
+                INSERT INTO films (name, description, release_date, duration, rating_id)
+                SELECT 'film ' || X, 'description of film ' || X, DATE '2000-01-01', 100, MOD(X, 5) + 1
+                FROM SYSTEM_RANGE(1, ?)
+                """, films);
+        jdbc.update("""
+                INSERT INTO film_genre (film_id, genre_id)
+                SELECT f.X, g.X FROM SYSTEM_RANGE(1, ?) f JOIN SYSTEM_RANGE(1, 6) g ON MOD(f.X + g.X, 3) = 0
+                """, films);
+    }
+
+    /**
+     * Лайки пользователей с id от 1 до users: пользователь u лайкает фильмы (u * k) mod films + 1.
+     */
+    static void insertLikes(JdbcTemplate jdbc, int users, int films, int likesPerUser) {
+        jdbc.update("""
+                INSERT INTO likes (user_id, film_id)
+                SELECT DISTINCT u.X, MOD(u.X * k.X, ?) + 1 FROM SYSTEM_RANGE(1, ?) u, SYSTEM_RANGE(1, ?) k
+                """, films, users, likesPerUser);
+    }
+
+    /**
+     * Дружба между пользователями с id от 1 до users: у каждого около friendsPerUser друзей среди соседей по id.
+     */
+    static void insertFriends(JdbcTemplate jdbc, int users, int friendsPerUser) {
+        jdbc.update("""
+                INSERT INTO friendship (user_id, friend_id)
+                SELECT DISTINCT u.X, MOD(u.X + k.X * 7, ?) + 1 FROM SYSTEM_RANGE(1, ?) u, SYSTEM_RANGE(1, ?) k
+                WHERE MOD(u.X + k.X * 7, ?) + 1 <> u.X
+                """, users, users, friendsPerUser, users);
+    }
+
+    /**
+     * Фильм с id = k лайкает каждый k-й пользователь — распределение с длинным хвостом.
+     */
+    static void insertLongTailLikes(JdbcTemplate jdbc, int users, int films) {
+        jdbc.update("""
+                INSERT INTO likes (user_id, film_id)
+                SELECT u.X, f.X FROM SYSTEM_RANGE(1, ?) u JOIN SYSTEM_RANGE(1, ?) f ON MOD(u.X, f.X) = 0
+                """, users, films);
+    }
+
+    /**
+     * Граф дружбы пользователей с id от 1 до users: у каждого до friendsPerUser случайных друзей.
+     */
+    static void generateFriendships(FriendshipGraph.EdgeConsumer edges, int users, int friendsPerUser, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] friends = new long[friendsPerUser];
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < friendsPerUser; i++) {
+                friends[i] = random.nextLong(1, users + 1);
+            }
+            Arrays.sort(friends);
+            for (int i = 0; i < friendsPerUser; i++) {
+                if (friends[i] != userId && (i == 0 || friends[i] != friends[i - 1])) {
+                    edges.accept(userId, friends[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Лайки пользователей с id от 1 до users: до likesPerUser фильмов у каждого со смещением к «хитам».
+     */
+    static void generateLikes(LikeMatrix.LikeConsumer likes, int users, int films, int likesPerUser, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] liked = new long[likesPerUser];
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < likesPerUser; i++) {
+                // Куб равномерного числа смещает выбор к фильмам с маленьким id
+                liked[i] = 1 + (long) (Math.pow(random.nextDouble(), 3) * films);
+            }
+            Arrays.sort(liked);
+            for (int i = 0; i < likesPerUser; i++) {
+                if (i == 0 || liked[i] != liked[i - 1]) {
+                    likes.accept(userId, liked[i]);
+                }
+            }
+        }
+    }
+
+    static void reload(ConfigurableApplicationContext context) {
+        context.getBean(LikeRepository.class).load();
+        context.getBean(FriendshipRepository.class).loadGraph();
+        context.getBean(FilmRepository.class).buildSearchIndex();
+    }
+
+    /**
+     * Свойства передаются как аргументы командной строки: у них приоритет выше, чем
+     * у application.properties, который иначе подключил бы файловую базу.
+     */
+    private static ConfigurableApplicationContext run(String database, WebApplicationType type,
+                                                      String... properties) {
+        Stream<String> defaults = Stream.of(
+                "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE",
+                "logging.level.root=WARN",
+                "filmorate.popular.reconcile-interval=PT1H");
+        String[] args = Stream.concat(defaults, Arrays.stream(properties))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(type)
+                .logStartupInfo(false)
+                .run(args);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dal.like.LikeMatrix;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации фильмов на сгенерированной матрице лайков: 100 000 пользователей, 50 000 фильмов,
+ * по ~20 лайков на пользователя со смещением к популярным фильмам. Матрица строится в памяти,
+ * без базы данных. Цель по задержке: p99 меньше 50 мс.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmRecommendationsBenchmark {
+    private static final int USERS = 100_000;
+    private static final int FILMS = 50_000;
+    private static final int LIKES_PER_USER = 20;
+    private static final int COUNT = 10;
+
+    private final LikeMatrix matrix = new LikeMatrix();
+
+    @Setup
+    public void setUp() {
+        matrix.load(likes -> BenchmarkApplication.generateLikes(likes, USERS, FILMS, LIKES_PER_USER, 42));
+    }
+
+    @Benchmark
+    public long[] recommendFilms() {
+        return matrix.recommendFilms(ThreadLocalRandom.current().nextLong(1, USERS + 1), COUNT);
+    }
+}
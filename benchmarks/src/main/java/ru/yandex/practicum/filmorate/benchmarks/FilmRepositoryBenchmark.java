@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции FilmRepository на базах разного размера. У каждого пользователя 10 лайков.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmRepositoryBenchmark {
+    private static final int LIKES_PER_USER = 10;
+
+    @Param({"1000", "10000", "100000"})
+    private int films;
+
+    private ConfigurableApplicationContext context;
+    private FilmRepository filmRepository;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("films-" + films);
+        BenchmarkApplication.fill(context, films, films, LIKES_PER_USER);
+        filmRepository = context.getBean(FilmRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Film create() {
+        return filmRepository.create(newFilm(null));
+    }
+
+    @Benchmark
+    public Film update() {
+        return filmRepository.update(newFilm(randomFilmId()));
+    }
+
+    @Benchmark
+    public Optional<Film> findFilmById() {
+        return filmRepository.findFilmById(randomFilmId());
+    }
+
+    @Benchmark
+    public Optional<Film> findFilmByIdAsync() {
+        return filmRepository.findFilmByIdAsync(randomFilmId()).join();
+    }
+
+    @Benchmark
+    public Collection<Film> findPopular() {
+        return filmRepository.findPopular(10);
+    }
+
+    @Benchmark
+    public List<Film> findAll() {
+        return filmRepository.findAll();
+    }
+
+    private long randomFilmId() {
+        return ThreadLocalRandom.current().nextLong(1, films + 1);
+    }
+
+    private static Film newFilm(Long id) {
+        Mpa mpa = new Mpa();
+        mpa.setId(3L);
+        Genre comedy = new Genre();
+        comedy.setId(1L);
+        Genre drama = new Genre();
+        drama.setId(2L);
+
+        Film film = new Film();
+        film.setId(id);
+        film.setName("benchmark film");
+        film.setDescription("film created by benchmark");
+        film.setReleaseDate(LocalDate.of(2020, 1, 1));
+        film.setDuration(120);
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(comedy, drama)));
+        return film;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipGraph;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации друзей на сгенерированном графе: 1 млн пользователей, ~50 млн связей и один пользователь
+ * с 20 000 друзей, у которого рекомендации считаются параллельно. Граф строится в памяти, без базы данных.
+ * Цель по задержке для обычного пользователя (~2500 кандидатов): p99 не больше 10 мс.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FriendSuggestionsBenchmark {
+    private static final int USERS = 1_000_000;
+    private static final int FRIENDS_PER_USER = 50;
+    private static final long HUB_USER = 1;
+    private static final int HUB_FRIENDS = 20_000;
+    private static final int COUNT = 10;
+
+    private final FriendshipGraph graph = new FriendshipGraph();
+
+    @Setup
+    public void setUp() {
+        graph.load(edges -> {
+            BenchmarkApplication.generateFriendships(edges, USERS, FRIENDS_PER_USER, 42);
+            for (long friendId = 2; friendId <= HUB_FRIENDS + 1; friendId++) {
+                edges.accept(HUB_USER, friendId);
+            }
+        });
+    }
+
+    @Benchmark
+    public long[] suggestFriends() {
+        return graph.suggestFriends(ThreadLocalRandom.current().nextLong(2, USERS + 1), COUNT);
+    }
+
+    @Benchmark
+    public long[] suggestFriendsForHub() {
+        return graph.suggestFriends(HUB_USER, COUNT);
+    }
+}
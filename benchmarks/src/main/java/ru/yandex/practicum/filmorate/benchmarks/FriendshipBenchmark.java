@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipGraph;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipRepository;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Друзья и общие друзья двух пользователей: первый дружит с каждым вторым, второй — с каждым третьим.
+ * Общие друзья сравниваются в трёх вариантах: самосоединение таблицы friendship в SQL,
+ * пересечение массивов графа в памяти и findCommonFriends вместе с загрузкой пользователей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FriendshipBenchmark {
+    private static final String SQL_COMMON_FRIENDS_QUERY = """
+            SELECT u.* FROM friendship f1
+            JOIN friendship f2 ON f1.friend_id = f2.friend_id
+            JOIN users u ON u.id = f1.friend_id
+            WHERE f1.user_id = ? AND f2.user_id = ?
+            """;
+
+    @Param({"100", "1000", "10000"})
+    private int friends;
+
+    private final FriendshipGraph graph = new FriendshipGraph();
+    private ConfigurableApplicationContext context;
+    private FriendshipRepository friendshipRepository;
+    private JdbcTemplate jdbc;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("friends-" + friends);
+        BenchmarkApplication.fill(context, friends * 3 + 10, 100, 1);
+        jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.update("INSERT INTO friendship (user_id, friend_id) SELECT 1, X * 2 + 2 FROM SYSTEM_RANGE(1, ?)",
+                friends);
+        jdbc.update("INSERT INTO friendship (user_id, friend_id) SELECT 2, X * 3 + 2 FROM SYSTEM_RANGE(1, ?)",
+                friends);
+        BenchmarkApplication.reload(context);
+        friendshipRepository = context.getBean(FriendshipRepository.class);
+        graph.load(edges -> jdbc.query("SELECT user_id, friend_id FROM friendship", rs -> {
+            edges.accept(rs.getLong("user_id"), rs.getLong("friend_id"));
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collection<User> findCommonFriends() {
+        return friendshipRepository.findCommonFriends(1L, 2L);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> findCommonFriendsSql() {
+        return jdbc.queryForList(SQL_COMMON_FRIENDS_QUERY, 1L, 2L);
+    }
+
+    @Benchmark
+    public long[] findCommonFriendsInGraph() {
+        return graph.findCommonFriends(1L, 2L);
+    }
+
+    @Benchmark
+    public List<User> findFriends() {
+        return friendshipRepository.findFriendsByUserId(1L);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.user.UserRepository;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайк со снятием лайка и добавление с удалением друга: прежний путь (проверка обоих id отдельными
+ * запросами, затем INSERT или DELETE) против одного запроса MERGE/DELETE с разбором внешних ключей.
+ * Прежний путь воспроизведён теми же запросами через JdbcTemplate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdempotentWriteBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 1_000;
+    private static final String INSERT_LIKE_QUERY = "INSERT INTO likes(user_id, film_id) VALUES (?, ?)";
+    private static final String DELETE_LIKE_QUERY = "DELETE FROM likes WHERE user_id = ? AND film_id = ?";
+    private static final String INSERT_FRIEND_QUERY = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
+    private static final String DELETE_FRIEND_QUERY = "DELETE FROM friendship WHERE (user_id = ? AND friend_id = ?)";
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbc;
+    private FilmRepository filmRepository;
+    private UserRepository userRepository;
+    private FilmService filmService;
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("writes");
+        BenchmarkApplication.fill(context, USERS, FILMS, 0);
+        jdbc = context.getBean(JdbcTemplate.class);
+        filmRepository = context.getBean(FilmRepository.class);
+        userRepository = context.getBean(UserRepository.class);
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void likeWithIdChecks() {
+        long userId = randomId(USERS);
+        long filmId = randomId(FILMS);
+        if (filmRepository.checkId(filmId) && userRepository.checkId(userId)) {
+            jdbc.update(INSERT_LIKE_QUERY, userId, filmId);
+        }
+        if (filmRepository.checkId(filmId) && userRepository.checkId(userId)) {
+            jdbc.update(DELETE_LIKE_QUERY, userId, filmId);
+        }
+    }
+
+    @Benchmark
+    public void likeWithMerge() {
+        long userId = randomId(USERS);
+        long filmId = randomId(FILMS);
+        filmService.putLike(filmId, userId);
+        filmService.deleteLike(filmId, userId);
+    }
+
+    @Benchmark
+    public void retriedLikeWithMerge() {
+        long userId = randomId(USERS);
+        long filmId = randomId(FILMS);
+        filmService.putLike(filmId, userId);
+        filmService.putLike(filmId, userId);
+        filmService.deleteLike(filmId, userId);
+    }
+
+    @Benchmark
+    public void friendWithIdChecks() {
+        long userId = randomId(USERS);
+        long friendId = randomId(USERS);
+        if (userRepository.checkId(userId) && userRepository.checkId(friendId)) {
+            jdbc.update(INSERT_FRIEND_QUERY, userId, friendId);
+        }
+        if (userRepository.checkId(userId) && userRepository.checkId(friendId)) {
+            jdbc.update(DELETE_FRIEND_QUERY, userId, friendId);
+        }
+    }
+
+    @Benchmark
+    public void friendWithMerge() {
+        long userId = randomId(USERS);
+        long friendId = randomId(USERS);
+        userService.putFriend(userId, friendId);
+        userService.deleteFriend(userId, friendId);
+    }
+
+    private static long randomId(int bound) {
+        return ThreadLocalRandom.current().nextLong(1, bound + 1);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация Film и User тем же ObjectMapper, который Spring Boot использует в контроллерах.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private ObjectWriter writer;
+    private Film film;
+    private User user;
+    private byte[] filmJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        writer = objectMapper.writer();
+        Mpa mpa = new Mpa();
+        mpa.setId(3L);
+        mpa.setName("PG-13");
+        Genre comedy = new Genre();
+        comedy.setId(1L);
+        comedy.setName("Комедия");
+        Genre drama = new Genre();
+        drama.setId(2L);
+        drama.setName("Драма");
+
+        film = new Film();
+        film.setId(42L);
+        film.setName("Ёжик в тумане");
+        film.setDescription("Мультфильм о ёжике, который шёл к медвежонку считать звёзды");
+        film.setReleaseDate(LocalDate.of(1975, 1, 1));
+        film.setDuration(10);
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(comedy, drama)));
+
+        user = new User();
+        user.setId(7L);
+        user.setEmail("user@bench.ru");
+        user.setLogin("user");
+        user.setName("Пользователь");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+
+        filmJson = writer.writeValueAsBytes(film);
+    }
+
+    @Benchmark
+    public byte[] serializeFilm() throws JsonProcessingException {
+        return writer.writeValueAsBytes(film);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws JsonProcessingException {
+        return writer.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public Film deserializeFilm() throws Exception {
+        return objectMapper.readValue(filmJson, Film.class);
+    }
+}
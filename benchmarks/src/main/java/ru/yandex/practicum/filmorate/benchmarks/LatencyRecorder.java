@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Все задержки одной операции нагрузочного теста в микросекундах.
+ * Хранятся целиком, чтобы перцентили вплоть до p999 считались точно, а не по корзинам.
+ */
+final class LatencyRecorder {
+    private long[] micros = new long[1024];
+    private int count;
+    private int errors;
+    private int dropped;
+
+    synchronized void record(long latencyMicros, boolean error) {
+        if (count == micros.length) {
+            micros = Arrays.copyOf(micros, count * 2);
+        }
+        micros[count++] = latencyMicros;
+        if (error) {
+            errors++;
+        }
+    }
+
+    synchronized void drop() {
+        dropped++;
+    }
+
+    synchronized Summary summarize(String name, double seconds) {
+        long[] sorted = Arrays.copyOf(micros, count);
+        Arrays.sort(sorted);
+        return new Summary(name, count, errors, dropped, count / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1000.0;
+    }
+
+    /**
+     * Итог по операции: задержки в миллисекундах, пропускная способность в запросах в секунду.
+     */
+    record Summary(String endpoint, int requests, int errors, int dropped, double throughput,
+                   double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+    }
+}
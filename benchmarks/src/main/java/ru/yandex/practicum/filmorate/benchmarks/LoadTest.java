@@ -0,0 +1,266 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест всего стека: Tomcat, Jackson, контроллеры, сервисы и H2 в памяти.
+ * Поднимает приложение на случайном порту, заполняет базу и подаёт запросы по открытой модели:
+ * запросы приходят пуассоновским потоком с заданной интенсивностью независимо от того, успел ли
+ * сервер ответить на предыдущие. Задержка считается от запланированного момента отправки,
+ * поэтому отставание генератора не скрывает очередь на сервере.
+ * <p>
+ * Для каждой ступени rates печатает пропускную способность и p50/p99/p999 по эндпоинтам
+ * и пишет их в JSON-файл result. Параметры передаются как ключ=значение, например:
+ * rates=200,400,800 duration=PT30S mix=browse:50,popular:50
+ */
+public final class LoadTest implements AutoCloseable {
+    static final Map<String, String> DATA_DEFAULTS = Map.of(
+            "users", "10000",
+            "readers", "5000",
+            "films", "2000",
+            "likes", "10",
+            "friends", "20",
+            "mix", Workload.DEFAULT_MIX,
+            "max-in-flight", "1000");
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "rates", "100,200,400",
+            "warmup", "PT10S",
+            "duration", "PT20S",
+            "result", "target/load-result.json");
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    private final ConfigurableApplicationContext context;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Workload workload;
+    private final int maxInFlight;
+
+    private LoadTest(ConfigurableApplicationContext context, Map<String, String> options) {
+        int users = Integer.parseInt(options.get("users"));
+        int readers = Integer.parseInt(options.get("readers"));
+        int films = Integer.parseInt(options.get("films"));
+        if (readers <= 0 || readers >= users) {
+            throw new IllegalArgumentException("readers должно быть больше 0 и меньше users");
+        }
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        BenchmarkApplication.insertUsers(jdbc, users);
+        BenchmarkApplication.insertFilms(jdbc, films);
+        BenchmarkApplication.insertLikes(jdbc, readers, films, Integer.parseInt(options.get("likes")));
+        BenchmarkApplication.insertFriends(jdbc, readers, Integer.parseInt(options.get("friends")));
+        BenchmarkApplication.reload(context);
+
+        this.context = context;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        URI baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+        this.workload = new Workload(baseUri, users, readers, films, options.get("mix"));
+        this.maxInFlight = Integer.parseInt(options.get("max-in-flight"));
+    }
+
+    /**
+     * Поднимает приложение над отдельной базой database с дополнительными свойствами и заполняет её.
+     */
+    static LoadTest start(String database, Map<String, String> options, String... properties) {
+        ConfigurableApplicationContext context = BenchmarkApplication.startServer(database, properties);
+        try {
+            return new LoadTest(context, options);
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parseOptions(args, DEFAULTS);
+        double[] rates = Arrays.stream(options.get("rates").split(","))
+                .mapToDouble(rate -> Double.parseDouble(rate.trim()))
+                .toArray();
+        Duration duration = Duration.parse(options.get("duration"));
+
+        List<Step> steps = new ArrayList<>();
+        try (LoadTest loadTest = start("load-test", options)) {
+            System.out.printf("Прогрев: %.0f запросов/с в течение %s%n", rates[0], options.get("warmup"));
+            loadTest.runOpen(rates[0], Duration.parse(options.get("warmup")));
+            for (double rate : rates) {
+                Step step = loadTest.runOpen(rate, duration);
+                print(step);
+                steps.add(step);
+            }
+        }
+        write(options, new Result(options, steps));
+    }
+
+    /**
+     * Ступень открытой модели. Если одновременно ждут ответа maxInFlight запросов, новый запрос
+     * не отправляется и учитывается как отброшенный — это признак того, что сервер насыщен.
+     */
+    Step runOpen(double rate, Duration duration) throws InterruptedException {
+        Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long scheduled = start;
+
+        while (scheduled < end) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Workload.Request request = workload.next();
+            LatencyRecorder recorder = recorders.computeIfAbsent(request.endpoint(), name -> new LatencyRecorder());
+            if (inFlight.tryAcquire()) {
+                long intended = scheduled;
+                client.sendAsync(request.request().build(), HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            recorder.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended),
+                                    error != null || response.statusCode() >= 400);
+                            inFlight.release();
+                        });
+            } else {
+                recorder.drop();
+            }
+            scheduled += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+        }
+
+        if (inFlight.tryAcquire(maxInFlight, DRAIN_TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+            inFlight.release(maxInFlight);
+        }
+        return summarize(rate, 0, start, recorders);
+    }
+
+    /**
+     * Ступень закрытой модели: clients клиентов в виртуальных потоках, каждый отправляет
+     * следующий запрос сразу после ответа на предыдущий.
+     */
+    Step runClosed(int clients, Duration duration) {
+        Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                clientThreads.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        Workload.Request request = workload.next();
+                        LatencyRecorder recorder =
+                                recorders.computeIfAbsent(request.endpoint(), name -> new LatencyRecorder());
+                        long sent = System.nanoTime();
+                        boolean error;
+                        try {
+                            error = client.send(request.request().build(), HttpResponse.BodyHandlers.discarding())
+                                    .statusCode() >= 400;
+                        } catch (IOException e) {
+                            error = true;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        recorder.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent), error);
+                    }
+                });
+            }
+        }
+        return summarize(0, clients, start, recorders);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        executor.close();
+        context.close();
+    }
+
+    static void print(Step step) {
+        if (step.clients() > 0) {
+            System.out.printf("%n%s: %d клиентов, %.1f запросов/с за %.1f с%n",
+                    step.mode(), step.clients(), step.achievedRate(), step.seconds());
+        } else {
+            System.out.printf("%nЦелевая интенсивность %.0f запросов/с, фактическая %.1f запросов/с за %.1f с%n",
+                    step.targetRate(), step.achievedRate(), step.seconds());
+        }
+        System.out.printf("%-45s %9s %7s %8s %9s %9s %9s %9s %9s%n",
+                "эндпоинт", "запросов", "ошибок", "отброшено", "запр/с", "p50, мс", "p99, мс", "p999, мс", "max, мс");
+        for (LatencyRecorder.Summary summary : step.endpoints()) {
+            System.out.printf("%-45s %9d %7d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    summary.endpoint(), summary.requests(), summary.errors(), summary.dropped(),
+                    summary.throughput(), summary.p50Millis(), summary.p99Millis(), summary.p999Millis(),
+                    summary.maxMillis());
+        }
+    }
+
+    static void write(Map<String, String> options, Object result) throws IOException {
+        Path path = Path.of(options.get("result"));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), result);
+        System.out.printf("Результаты сохранены в %s%n", path.toAbsolutePath());
+    }
+
+    /**
+     * Параметры вида ключ=значение поверх общих параметров данных и defaults конкретного теста.
+     */
+    static Map<String, String> parseOptions(String[] args, Map<String, String> defaults) {
+        Map<String, String> options = new LinkedHashMap<>(DATA_DEFAULTS);
+        options.putAll(defaults);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Ожидается параметр вида ключ=значение, получено: " + arg);
+            }
+            String key = arg.substring(0, separator);
+            if (!options.containsKey(key)) {
+                throw new IllegalArgumentException("Неизвестный параметр: " + key + ", доступны: " + options.keySet());
+            }
+            options.put(key, arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private Step summarize(double rate, int clients, long start, Map<String, LatencyRecorder> recorders) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        List<LatencyRecorder.Summary> endpoints = recorders.entrySet().stream()
+                .map(entry -> entry.getValue().summarize(entry.getKey(), seconds))
+                .sorted(Comparator.comparing(LatencyRecorder.Summary::endpoint))
+                .toList();
+        double achieved = endpoints.stream().mapToDouble(LatencyRecorder.Summary::throughput).sum();
+        String mode = context.getEnvironment().getProperty("spring.threads.virtual.enabled", Boolean.class, false)
+                ? "virtual" : "platform";
+        return new Step(mode, rate, clients, achieved, seconds, endpoints);
+    }
+
+    record Step(String mode, double targetRate, int clients, double achievedRate, double seconds,
+                List<LatencyRecorder.Summary> endpoints) {
+    }
+
+    record Result(Map<String, String> options, List<Step> steps) {
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.like.LikeRepository;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рейтинг популярных фильмов в памяти против SQL-агрегации по таблице likes (~1 млн лайков).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PopularFilmsBenchmark {
+    private static final int USERS = 135_000;
+    private static final int FILMS = 1_000;
+    private static final int COUNT = 10;
+    private static final String SQL_POPULAR_FILMS_QUERY = """
+            SELECT f.id, f.name, f.description, f.release_date, f.duration, f.rating_id, COUNT(fl.user_id) AS likes
+            FROM films f LEFT JOIN likes fl ON f.id = fl.film_id GROUP BY f.id ORDER BY likes DESC, f.id ASC LIMIT ?""";
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbc;
+    private FilmRepository filmRepository;
+    private LikeRepository likeRepository;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("popular");
+        jdbc = context.getBean(JdbcTemplate.class);
+        BenchmarkApplication.insertUsers(jdbc, USERS);
+        BenchmarkApplication.insertFilms(jdbc, FILMS);
+        BenchmarkApplication.insertLongTailLikes(jdbc, USERS, FILMS);
+        BenchmarkApplication.reload(context);
+        filmRepository = context.getBean(FilmRepository.class);
+        likeRepository = context.getBean(LikeRepository.class);
+
+        List<Long> expected = sqlGroupBy().stream().map(row -> ((Number) row.get("ID")).longValue()).toList();
+        if (!likeRepository.findPopularFilmIds(COUNT).equals(expected)) {
+            throw new IllegalStateException("Рейтинг в памяти не совпадает с SQL: " + expected);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> sqlGroupBy() {
+        return jdbc.queryForList(SQL_POPULAR_FILMS_QUERY, COUNT);
+    }
+
+    @Benchmark
+    public List<Long> leaderboard() {
+        return likeRepository.findPopularFilmIds(COUNT);
+    }
+
+    @Benchmark
+    public Collection<Film> findPopular() {
+        return filmRepository.findPopular(COUNT);
+    }
+}
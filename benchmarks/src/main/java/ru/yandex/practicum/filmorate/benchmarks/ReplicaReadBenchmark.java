@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.replica.Replica;
+import ru.yandex.practicum.filmorate.dal.replica.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.dal.replica.ReplicatingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность чтения в зависимости от числа реплик (0 — все запросы к основной базе).
+ * Реплики работают в том же процессе, поэтому выигрыш ограничен числом ядер машины.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ReplicaReadBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 10_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"0", "1", "2", "4"})
+    private int replicas;
+
+    private ConfigurableApplicationContext context;
+    private FilmRepository filmRepository;
+    private FriendshipRepository friendshipRepository;
+
+    @Setup
+    public void setUp() throws SQLException, InterruptedException {
+        context = BenchmarkApplication.start("replicas-" + replicas, "filmorate.jdbc.replicas=" + replicas);
+        BenchmarkApplication.fill(context, USERS, FILMS, 10);
+        BenchmarkApplication.insertFriends(context.getBean(JdbcTemplate.class), USERS, 20);
+        BenchmarkApplication.reload(context);
+        filmRepository = context.getBean(FilmRepository.class);
+        friendshipRepository = context.getBean(FriendshipRepository.class);
+        awaitReplicas(context.getBean(DataSource.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Film> findFilmPage() {
+        return filmRepository.findPage(ThreadLocalRandom.current().nextLong(FILMS - PAGE_SIZE), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<User> findFriends() {
+        return friendshipRepository.findFriendsByUserId(ThreadLocalRandom.current().nextLong(1, USERS + 1));
+    }
+
+    private void awaitReplicas(DataSource dataSource) throws SQLException, InterruptedException {
+        if (replicas == 0) {
+            return;
+        }
+        long position = dataSource.unwrap(ReplicatingDataSource.class).getPosition();
+        List<Replica> all = dataSource.unwrap(ReplicaRoutingDataSource.class).getReplicas();
+        while (all.stream().anyMatch(replica -> replica.getAppliedPosition() < position)) {
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.dal.film.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.user.UserRowMapper;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор строк маппером без базы данных: строки лежат в ResultSet в памяти.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMapperBenchmark {
+    private static final int ROWS = 1000;
+
+    private final FilmRowMapper filmRowMapper = new FilmRowMapper();
+    private final UserRowMapper userRowMapper = new UserRowMapper();
+    private SimpleResultSet films;
+    private SimpleResultSet users;
+
+    @Setup
+    public void setUp() {
+        films = new SimpleResultSet();
+        films.setAutoClose(false);
+        films.addColumn("id", Types.BIGINT, 19, 0);
+        films.addColumn("name", Types.VARCHAR, 255, 0);
+        films.addColumn("description", Types.VARCHAR, 200, 0);
+        films.addColumn("release_date", Types.DATE, 10, 0);
+        films.addColumn("duration", Types.INTEGER, 10, 0);
+        films.addColumn("rating_id", Types.BIGINT, 19, 0);
+        users = new SimpleResultSet();
+        users.setAutoClose(false);
+        users.addColumn("id", Types.BIGINT, 19, 0);
+        users.addColumn("email", Types.VARCHAR, 255, 0);
+        users.addColumn("login", Types.VARCHAR, 100, 0);
+        users.addColumn("name", Types.VARCHAR, 255, 0);
+        users.addColumn("birthday", Types.DATE, 10, 0);
+        Date date = Date.valueOf("2000-01-01");
+        for (long i = 1; i <= ROWS; i++) {
+            films.addRow(i, "film " + i, "description of film " + i, date, 100, i % 5 + 1);
+            users.addRow(i, "user" + i + "@bench.ru", "user" + i, "user", date);
+        }
+    }
+
+    @Benchmark
+    public void mapFilms(Blackhole blackhole) throws SQLException {
+        films.beforeFirst();
+        for (int row = 0; films.next(); row++) {
+            blackhole.consume(filmRowMapper.mapRow(films, row));
+        }
+    }
+
+    @Benchmark
+    public void mapUsers(Blackhole blackhole) throws SQLException {
+        users.beforeFirst();
+        for (int row = 0; users.next(); row++) {
+            blackhole.consume(userRowMapper.mapRow(users, row));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайк со снятием лайка из нескольких потоков: таблица likes в основной базе (shards = 0)
+ * против таблицы, разложенной по shards отдельным базам H2 в памяти.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardedLikeBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 1_000;
+
+    @Param({"0", "1", "2", "4"})
+    private int shards;
+
+    private ConfigurableApplicationContext context;
+    private FilmService filmService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("sharded-likes-" + shards,
+                "filmorate.likes.shards.count=" + shards,
+                "filmorate.likes.shards.url=jdbc:h2:mem:sharded-likes-" + shards + "-%d;DB_CLOSE_DELAY=-1");
+        BenchmarkApplication.fill(context, USERS, FILMS, 0);
+        filmService = context.getBean(FilmService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void likeAndUnlike() {
+        long userId = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+        long filmId = ThreadLocalRandom.current().nextLong(1, FILMS + 1);
+        filmService.putLike(filmId, userId);
+        filmService.deleteLike(filmId, userId);
+    }
+}
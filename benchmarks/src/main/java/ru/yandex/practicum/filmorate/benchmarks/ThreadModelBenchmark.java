@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сравнение моделей потоков под clients одновременными клиентами (закрытая модель):
+ * platform — стандартный пул потоков Tomcat, virtual — виртуальный поток на запрос
+ * с ограничением числа одновременных обращений к базе filmorate.jdbc.max-concurrency.
+ * В обоих режимах Tomcat принимает все соединения клиентов, так что различается только модель потоков.
+ * Запуск: mvn -f benchmarks/pom.xml -Pthreads compile exec:exec -Dload.args="clients=10000"
+ */
+public final class ThreadModelBenchmark {
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "clients", "10000",
+            "warmup", "PT10S",
+            "duration", "PT30S",
+            "max-concurrency", "10",
+            "result", "target/thread-model-result.json");
+
+    private ThreadModelBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = LoadTest.parseOptions(args, DEFAULTS);
+        int clients = Integer.parseInt(options.get("clients"));
+        String[] connections = {
+                "server.tomcat.max-connections=" + (clients + 1000),
+                "server.tomcat.accept-count=" + clients};
+
+        List<LoadTest.Step> steps = new ArrayList<>();
+        steps.add(run("platform", options, clients, connections));
+        steps.add(run("virtual", options, clients, concat(connections,
+                "spring.threads.virtual.enabled=true",
+                "filmorate.jdbc.max-concurrency=" + options.get("max-concurrency"))));
+        steps.forEach(LoadTest::print);
+        LoadTest.write(options, new LoadTest.Result(options, steps));
+    }
+
+    private static LoadTest.Step run(String mode, Map<String, String> options, int clients, String... properties) {
+        try (LoadTest loadTest = LoadTest.start("threads-" + mode, options, properties)) {
+            System.out.printf("%s: прогрев %s%n", mode, options.get("warmup"));
+            loadTest.runClosed(clients, Duration.parse(options.get("warmup")));
+            LoadTest.Step step = loadTest.runClosed(clients, Duration.parse(options.get("duration")));
+            LoadTest.print(step);
+            return step;
+        }
+    }
+
+    private static String[] concat(String[] first, String... second) {
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
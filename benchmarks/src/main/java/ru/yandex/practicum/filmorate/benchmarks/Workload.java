@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Смесь запросов нагрузочного теста. Читающие запросы обращаются к первым readers пользователям,
+ * у которых есть лайки и друзья; лайки и дружбу меняют только остальные пользователи.
+ * Workload помнит, какие лайки и дружбы он уже создал, поэтому повторная операция над той же парой
+ * снимает лайк или удаляет друга, а не нарушает первичный ключ.
+ */
+final class Workload {
+    static final String DEFAULT_MIX = "browse:20,film:20,popular:15,like:15,friend:5,common:15,create:10";
+    private static final int HOT_FILMS = 100;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Set<String> OPERATIONS = Set.of("browse", "film", "popular", "common", "like", "friend", "create");
+
+    private final URI baseUri;
+    private final int users;
+    private final int readers;
+    private final int films;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+    private final Set<Long> likes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> friendships = ConcurrentHashMap.newKeySet();
+    private final AtomicLong createdFilms = new AtomicLong();
+
+    Workload(URI baseUri, int users, int readers, int films, String mix) {
+        this.baseUri = baseUri;
+        this.users = users;
+        this.readers = readers;
+        this.films = films;
+        Map<String, Integer> weights = parseMix(mix);
+        operations = weights.keySet().toArray(String[]::new);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Следующий запрос по весам смеси. Имя запроса — эндпоинт, по которому копится статистика.
+     */
+    Request next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (cumulativeWeights[index] <= point) {
+            index++;
+        }
+        return switch (operations[index]) {
+            case "browse" -> get("GET /films?limit&after", "/films?limit=20&after=" + random.nextInt(films));
+            case "film" -> get("GET /films/{id}", "/films/" + randomFilm(random));
+            case "popular" -> get("GET /films/popular", "/films/popular?count=10");
+            case "common" -> get("GET /users/{id}/friends/common/{otherId}",
+                    "/users/" + randomReader(random) + "/friends/common/" + randomReader(random));
+            case "like" -> like(random);
+            case "friend" -> friend(random);
+            case "create" -> create();
+            default -> throw new IllegalArgumentException("Неизвестная операция: " + operations[index]);
+        };
+    }
+
+    private Request like(ThreadLocalRandom random) {
+        long userId = randomWriter(random);
+        long filmId = random.nextLong(1, films + 1);
+        String path = "/films/" + filmId + "/like/" + userId;
+        if (likes.add(pair(userId, filmId))) {
+            return new Request("PUT /films/{id}/like/{userId}", build(path).PUT(HttpRequest.BodyPublishers.noBody()));
+        }
+        likes.remove(pair(userId, filmId));
+        return new Request("DELETE /films/{id}/like/{userId}", build(path).DELETE());
+    }
+
+    private Request friend(ThreadLocalRandom random) {
+        long userId = randomWriter(random);
+        long friendId = random.nextLong(1, users + 1);
+        if (friendId == userId) {
+            friendId = friendId % users + 1;
+        }
+        String path = "/users/" + userId + "/friends/" + friendId;
+        if (friendships.add(pair(userId, friendId))) {
+            return new Request("PUT /users/{id}/friends/{friendId}",
+                    build(path).PUT(HttpRequest.BodyPublishers.noBody()));
+        }
+        friendships.remove(pair(userId, friendId));
+        return new Request("DELETE /users/{id}/friends/{friendId}", build(path).DELETE());
+    }
+
+    private Request create() {
+        String body = """
+                {"name":"load film %d","description":"created by load test","releaseDate":"2020-01-01",\
+                "duration":100,"mpa":{"id":1},"genres":[{"id":1},{"id":2}]}""".formatted(createdFilms.incrementAndGet());
+        return new Request("POST /films", build("/films")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+    }
+
+    private Request get(String name, String path) {
+        return new Request(name, build(path).GET());
+    }
+
+    private HttpRequest.Builder build(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Восемь запросов из десяти приходятся на сотню «горячих» фильмов.
+     */
+    private long randomFilm(ThreadLocalRandom random) {
+        int hot = Math.min(HOT_FILMS, films);
+        return random.nextInt(10) < 8 ? random.nextLong(1, hot + 1) : random.nextLong(1, films + 1);
+    }
+
+    private long randomReader(ThreadLocalRandom random) {
+        return random.nextLong(1, readers + 1);
+    }
+
+    private long randomWriter(ThreadLocalRandom random) {
+        return random.nextLong(readers + 1, users + 1);
+    }
+
+    private static long pair(long first, long second) {
+        return first << 32 | second;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split(":");
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Ожидается операция:вес, получено: " + part);
+            }
+            if (!OPERATIONS.contains(entry[0].trim())) {
+                throw new IllegalArgumentException("Неизвестная операция: " + entry[0] + ", доступны: " + OPERATIONS);
+            }
+            int weight = Integer.parseInt(entry[1].trim());
+            if (weight > 0) {
+                weights.put(entry[0].trim(), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("В смеси нет ни одной операции с положительным весом");
+        }
+        return weights;
+    }
+
+    record Request(String endpoint, HttpRequest.Builder request) {
+    }
+}
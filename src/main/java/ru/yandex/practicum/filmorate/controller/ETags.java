@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import java.util.List;
+
+/**
+ * Сравнение ETag из If-None-Match. Ответы по id сравнивают теги сами, а не через WebRequest.checkNotModified:
+ * тот ставит заголовок ETag сразу, и он остаётся даже на ответе 404 для ещё не созданного объекта.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * Слабое сравнение ETag из If-None-Match, как требует RFC 9110 для GET.
+     */
+    static boolean matchesAny(List<String> ifNoneMatch, String etag) {
+        return ifNoneMatch != null && ifNoneMatch.stream()
+                .anyMatch(tag -> tag.trim().replaceFirst("^W/", "").equals(etag));
+    }
+}
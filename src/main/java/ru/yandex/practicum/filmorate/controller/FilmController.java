@@ -1,13 +1,24 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 
 @Slf4j
@@ -16,25 +27,80 @@ import java.util.Collection;
 @RequestMapping("/films")
 public class FilmController { //работа с запросами
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final EntityVersions versions;
+    private final FilmJsonCache filmJsonCache;
 
+    /**
+     * Если версия фильма совпадает с If-None-Match, сразу отвечает 304 без обращения к базе данных.
+     * Иначе отдаёт готовые байты из {@link FilmJsonCache}, а при промахе собирает фильм асинхронно:
+     * поток сервлета освобождается, ответ отправляется, когда будут готовы строка фильма и его жанры.
+     * ETag ставится только на найденный фильм: ответ 404 его не получает, иначе клиент
+     * мог бы получить 304 на этот ETag уже после создания фильма.
+     */
     @GetMapping("/{id}")
-    public Film findFilmById(
-            @PathVariable Long id
+    public CompletableFuture<ResponseEntity<byte[]>> findFilmById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) List<String> ifNoneMatch
     ) {
         log.info("Получен GET-запрос на получение фильма по айди.");
-        return filmService.findFilmById(id);
+        String etag = versions.filmTag(id);
+        if (ETags.matchesAny(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+        }
+        boolean acceptsGzip = acceptsGzip(acceptEncoding);
+        return filmJsonCache.find(id, etag)
+                .map(entry -> CompletableFuture.completedFuture(jsonResponse(entry, acceptsGzip)))
+                .orElseGet(() -> filmService.findFilmByIdAsync(id)
+                        .thenApply(film -> jsonResponse(filmJsonCache.put(id, etag, film), acceptsGzip)));
     }
 
+    /**
+     * Без параметров возвращает все фильмы. С параметрами limit/after — страницу фильмов с id больше after,
+     * курсор следующей страницы передаётся в заголовке X-Next-Cursor.
+     */
     @GetMapping
-    public Collection<Film> findAll() {
-        log.info("Получен GET-запрос на получение всех фильмов.");
-        return filmService.findAll();
+    public ResponseEntity<Collection<Film>> findAll(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long after
+    ) {
+        if (limit == null && after == null) {
+            log.info("Получен GET-запрос на получение всех фильмов.");
+            return ResponseEntity.ok(filmService.findAll());
+        }
+        log.info("Получен GET-запрос на получение страницы фильмов: limit={}, after={}.", limit, after);
+        Page<Film> page = filmService.findPage(after, limit);
+        return withNextCursor(page);
+    }
+
+    @GetMapping(value = NdjsonStreams.EXPORT_PATH, produces = NdjsonStreams.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        log.info("Получен GET-запрос на выгрузку всех фильмов.");
+        return NdjsonStreams.stream(objectMapper, filmService::exportAll);
+    }
+
+    @GetMapping("/search")
+    public Collection<Film> search(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false, defaultValue = "10") int count
+    ) {
+        log.info("Получен GET-запрос на поиск фильмов: {}", q);
+        return filmService.search(q, count);
     }
 
     @GetMapping("/popular")
-    public Collection<Film> findPopular(@RequestParam(required = false, defaultValue = "10") int count) {
+    public Collection<Film> findPopular(
+            @RequestParam(required = false, defaultValue = "10") int count,
+            WebRequest request
+    ) {
         log.info("Получен GET-запрос на получение популярных фильмов.");
+        if (request.checkNotModified(versions.popularTag())) {
+            return null;
+        }
         return filmService.findPopular(count);
     }
 
@@ -45,6 +111,13 @@ public class FilmController { //работа с запросами
         return filmService.create(film);
     }
 
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping("/batch")
+    public List<Long> createAll(@RequestBody List<Film> films) {
+        log.info("Получен POST-запрос на пакетное добавление {} фильмов", films.size());
+        return filmService.createAll(films);
+    }
+
     @PutMapping
     public Film update(@RequestBody Film film) {
         log.info("Получен PUT-запрос на обновление фильма: {}", film);
@@ -70,4 +143,56 @@ public class FilmController { //работа с запросами
         log.info("Получен Delete-запрос на удаление лайка");
         filmService.deleteLike(filmId, userId);
     }
+
+    /**
+     * Разбирает Accept-Encoding с q-значениями: gzip;q=0 — отказ от gzip, явно указанный gzip важнее «*».
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = quality;
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        double quality = gzip != null ? gzip : any != null ? any : 0;
+        return quality > 0;
+    }
+
+    private static ResponseEntity<byte[]> jsonResponse(FilmJsonCache.Entry entry, boolean acceptsGzip) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(entry.getEtag())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip && entry.getGzipped() != null) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.getGzipped());
+        }
+        return response.body(entry.getJson());
+    }
+
+    private ResponseEntity<Collection<Film>> withNextCursor(Page<Film> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
 }
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Готовые JSON-ответы GET /films/{id}: байты сериализованного фильма и, если это короче, их gzip.
+ * Запись привязана к ETag версии фильма, поэтому после FilmRepository.update старая запись просто
+ * перестаёт совпадать и заменяется при следующем чтении. Размер ограничен maxEntries; при переполнении
+ * вытесняются записи, которые не читались с прошлого обхода (алгоритм «второго шанса»). Стрелка обхода
+ * сохраняется между вытеснениями, поэтому каждая запись получает второй шанс один раз за полный круг.
+ */
+@Component
+public class FilmJsonCache {
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final boolean gzip;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    private Iterator<Map.Entry<Long, Entry>> clockHand;
+
+    public FilmJsonCache(ObjectMapper objectMapper,
+                         @Value("${filmorate.films.json-cache.max-entries:10000}") int maxEntries,
+                         @Value("${filmorate.films.json-cache.gzip:true}") boolean gzip) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        this.gzip = gzip;
+    }
+
+    public Optional<Entry> find(long filmId, String etag) {
+        Entry entry = entries.get(filmId);
+        if (entry == null || !entry.etag.equals(etag)) {
+            return Optional.empty();
+        }
+        entry.referenced = true;
+        return Optional.of(entry);
+    }
+
+    /**
+     * Сериализует фильм и кладёт результат в кэш под ETag, прочитанным до запроса к базе данных.
+     */
+    public Entry put(long filmId, String etag, Film film) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(film);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerException("Не удалось сериализовать фильм с id = " + filmId + ": " + e.getMessage());
+        }
+        byte[] gzipped = gzip ? compress(json) : null;
+        Entry entry = new Entry(etag, json, gzipped != null && gzipped.length < json.length ? gzipped : null);
+        if (maxEntries > 0) {
+            entries.put(filmId, entry);
+            evictIfFull(filmId);
+        }
+        return entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Продолжает обход с места, где остановилось прошлое вытеснение. Только что добавленная запись
+     * пропускается: её ещё никто не успел прочитать.
+     */
+    private void evictIfFull(long insertedId) {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        synchronized (evictionLock) {
+            while (entries.size() > maxEntries) {
+                if (clockHand == null || !clockHand.hasNext()) {
+                    clockHand = entries.entrySet().iterator();
+                    if (!clockHand.hasNext()) {
+                        return;
+                    }
+                }
+                Map.Entry<Long, Entry> candidate = clockHand.next();
+                if (candidate.getKey() == insertedId) {
+                    continue;
+                }
+                Entry entry = candidate.getValue();
+                if (entry.referenced) {
+                    entry.referenced = false;
+                } else {
+                    entries.remove(candidate.getKey(), entry);
+                }
+            }
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(out)) {
+            gzipStream.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static final class Entry {
+        private final String etag;
+        private final byte[] json;
+        private final byte[] gzipped;
+        private volatile boolean referenced;
+
+        private Entry(String etag, byte[] json, byte[] gzipped) {
+            this.etag = etag;
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * Сжатое представление или null, если gzip выключен или не уменьшает ответ.
+         */
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+    }
+}
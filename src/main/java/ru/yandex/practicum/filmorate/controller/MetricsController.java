@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dal.metrics.QueryMetrics;
+import ru.yandex.practicum.filmorate.model.QueryMetricsReport;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    private final QueryMetrics queryMetrics;
+
+    @GetMapping("/queries")
+    public QueryMetricsReport findQueryMetrics() {
+        log.info("Получен GET-запрос на статистику SQL-запросов.");
+        return queryMetrics.report();
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+import ru.yandex.practicum.filmorate.dal.metrics.QueryCounter;
+
+import java.io.IOException;
+
+/**
+ * Профиль diagnostics: добавляет к каждому ответу число обращений к базе данных (X-Query-Count)
+ * и число SQL-запросов (X-Statement-Count), сделанных при его обработке. Тело ответа буферизуется,
+ * чтобы заголовки можно было выставить после того, как контроллер закончил работу, в том числе
+ * для асинхронных ответов — счётчик переживает async-диспетчеризацию в атрибуте запроса.
+ * Потоковые выгрузки NDJSON не оборачиваются: буфер собрал бы в памяти весь ответ.
+ */
+@Component
+@Profile("diagnostics")
+public class QueryCountHeaderFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String STATEMENT_COUNT_HEADER = "X-Statement-Count";
+    private static final String COUNTER_ATTRIBUTE = QueryCountHeaderFilter.class.getName() + ".counter";
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().endsWith(NdjsonStreams.EXPORT_PATH);
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryCounter.Counter counter = (QueryCounter.Counter) request.getAttribute(COUNTER_ATTRIBUTE);
+        if (counter == null) {
+            counter = new QueryCounter.Counter();
+            request.setAttribute(COUNTER_ATTRIBUTE, counter);
+        }
+        ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (wrapper == null) {
+            wrapper = new ContentCachingResponseWrapper(response);
+        }
+        try (QueryCounter.Scope ignored = QueryCounter.open(counter)) {
+            chain.doFilter(request, wrapper);
+        } finally {
+            if (!isAsyncStarted(request)) {
+                wrapper.setHeader(QUERY_COUNT_HEADER, String.valueOf(counter.getRoundTrips()));
+                wrapper.setHeader(STATEMENT_COUNT_HEADER, String.valueOf(counter.getStatements()));
+                wrapper.copyBodyToResponse();
+            }
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 
 import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -15,7 +25,12 @@ import java.util.Collection;
 @RequestMapping("/users")
 public class UserController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final EntityVersions versions;
 
     @GetMapping("/{id}")
     public User findUserById(@PathVariable Long id) {
@@ -23,16 +38,42 @@ public class UserController {
         return userService.findUserById(id);
     }
 
+    /**
+     * Без параметров возвращает всех пользователей. С параметрами limit/after — страницу пользователей
+     * с id больше after, курсор следующей страницы передаётся в заголовке X-Next-Cursor.
+     */
     @GetMapping
-    public Collection<User> findAll() {
-        log.info("Получен GET-запрос на получение всех пользователей.");
-        return userService.findAll();
+    public ResponseEntity<Collection<User>> findAll(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long after
+    ) {
+        if (limit == null && after == null) {
+            log.info("Получен GET-запрос на получение всех пользователей.");
+            return ResponseEntity.ok(userService.findAll());
+        }
+        log.info("Получен GET-запрос на получение страницы пользователей: limit={}, after={}.", limit, after);
+        Page<User> page = userService.findPage(after, limit);
+        return withNextCursor(page);
+    }
+
+    @GetMapping(value = NdjsonStreams.EXPORT_PATH, produces = NdjsonStreams.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        log.info("Получен GET-запрос на выгрузку всех пользователей.");
+        return NdjsonStreams.stream(objectMapper, userService::exportAll);
     }
 
     @GetMapping("/{id}/friends")
-    Collection<User> getFriends(@PathVariable Long id) {
+    ResponseEntity<Collection<User>> getFriends(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) List<String> ifNoneMatch
+    ) {
         log.info("Получен GET-запрос на получение всех друзей пользователя {}.", id);
-        return userService.getFriends(id);
+        String etag = versions.friendsTag(id);
+        if (ETags.matchesAny(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        // ETag ставится только на успешный ответ: для несуществующего пользователя сервис бросит 404 раньше
+        return ResponseEntity.ok().eTag(etag).body(userService.getFriends(id));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
@@ -44,12 +85,36 @@ public class UserController {
         return userService.getCommonFriends(userId, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    Collection<User> getFriendSuggestions(
+            @PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "10") int count
+    ) {
+        log.info("Получен GET-запрос на рекомендации друзей для пользователя {}.", id);
+        return userService.getFriendSuggestions(id, count);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    Collection<Film> getRecommendations(
+            @PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "10") int count
+    ) {
+        log.info("Получен GET-запрос на рекомендации фильмов для пользователя {}.", id);
+        return filmService.findRecommendations(id, count);
+    }
+
     @PostMapping
     public User create(@RequestBody User user) {
         log.info("Получен POST-запрос на создание пользователя: {}", user);
         return userService.create(user);
     }
 
+    @PostMapping("/batch")
+    public ImportResult createAll(@RequestBody List<User> users) {
+        log.info("Получен POST-запрос на пакетное создание {} пользователей", users.size());
+        return userService.createAll(users);
+    }
+
     @PutMapping
     public User update(@RequestBody User user) {
         log.info("Получен PUT-запрос на обновление пользователя: {}", user);
@@ -75,4 +140,12 @@ public class UserController {
         log.info("Получен Delete-запрос на удаление друга");
         userService.deleteFriend(userId, friendId);
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<Collection<User>> withNextCursor(Page<User> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+}
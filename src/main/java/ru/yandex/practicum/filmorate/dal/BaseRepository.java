@@ -1,16 +1,28 @@
 package ru.yandex.practicum.filmorate.dal;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.filmorate.dal.replica.ReplicaRouting;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @RequiredArgsConstructor
 public class BaseRepository<T> {
+    protected static final int STREAM_FETCH_SIZE = 1000;
+
     protected final JdbcTemplate jdbc;
     protected final RowMapper<T> mapper;
 
@@ -27,6 +39,47 @@ public class BaseRepository<T> {
         return jdbc.query(query, mapper, params);
     }
 
+    /**
+     * Читает результат запроса курсором только вперёд и передаёт строки обработчику по одной,
+     * не собирая их в список. H2 по умолчанию материализует результат целиком,
+     * поэтому на время запроса для соединения включается ленивое выполнение.
+     */
+    protected void stream(String query, RowCallbackHandler handler, Object... params) {
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement settings = connection.createStatement()) {
+                settings.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(STREAM_FETCH_SIZE);
+                new ArgumentPreparedStatementSetter(params).setValues(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.processRow(rs);
+                    }
+                }
+            } finally {
+                try (Statement settings = connection.createStatement()) {
+                    settings.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Чтение для эндпоинтов на чтение: если подключены реплики (filmorate.jdbc.replicas),
+     * запросы внутри query могут выполниться на реплике. Проверки перед записью и всё,
+     * что не обёрнуто в read, читают основную базу.
+     */
+    protected static <R> R read(Supplier<R> query) {
+        return ReplicaRouting.read(query);
+    }
+
+    protected static void read(Runnable query) {
+        ReplicaRouting.read(query);
+    }
+
     protected boolean checkId(String query, Object... params) {
         int count = jdbc.queryForObject(query, Integer.class, params);
         return count > 0;
@@ -42,5 +95,17 @@ public class BaseRepository<T> {
             throw new InternalServerException("Объект для обновления не найден");
         }
     }
-}
 
+    /**
+     * Проверяет, что запись нарушила ограничение с данным именем. Имена внешних ключей заданы в миграции V1,
+     * чтобы по ошибке одного запроса было понятно, какой из связанных объектов не найден.
+     */
+    protected static boolean violates(DataIntegrityViolationException e, String constraint) {
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toUpperCase().contains(constraint.toUpperCase());
+    }
+
+    protected static String inPlaceholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -1,69 +1,160 @@
 package ru.yandex.practicum.filmorate.dal.film;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.dal.BaseRepository;
 import ru.yandex.practicum.filmorate.dal.like.LikeRepository;
+import ru.yandex.practicum.filmorate.dal.metrics.QueryCounter;
+import ru.yandex.practicum.filmorate.dal.reference.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.interfaceStorage.FilmStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
 public class FilmRepository extends BaseRepository<Film> implements FilmStorage {
     private final LikeRepository likeRepository;
+    private final ReferenceDataCache referenceData;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityVersions versions;
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private final ExecutorService detailsExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("film-details-", 0).factory());
+    private final Executor countedDetailsExecutor = QueryCounter.propagating(detailsExecutor);
 
+    private static final int BATCH_SIZE = 1000;
     private static final String FIND_ALL_QUERY = "SELECT * FROM films";
+    private static final String FIND_PAGE_QUERY = """
+            SELECT id, name, description, release_date, duration, rating_id FROM films
+            WHERE id > ? ORDER BY id ASC LIMIT ?""";
+    private static final String EXPORT_QUERY = """
+            SELECT f.id, f.name, f.description, f.release_date, f.duration, f.rating_id, fg.genre_id
+            FROM films f LEFT JOIN film_genre fg ON fg.film_id = f.id
+            ORDER BY f.id ASC""";
     private static final String FIND_BY_ID_QUERY = "SELECT id, name, description, release_date, duration, rating_id FROM films WHERE id=?";
+    private static final String FIND_BY_IDS_QUERY = "SELECT id, name, description, release_date, duration, rating_id FROM films WHERE id IN (%s)";
     private static final String INSERT_QUERY = "INSERT INTO films (name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
-    private static final String COUNT_OF_RATINGS_QUERY = "SELECT COUNT(*) FROM rating_mpa WHERE id = ?";
-    private static final String FIND_GENRES_BY_FILM_QUERY = """
-            SELECT g.id, g.name FROM genre g JOIN film_genre fg
-            ON g.id = fg.genre_id WHERE fg.film_id = ? ORDER BY g.id ASC
+    private static final String FIND_GENRES_BY_FILM_QUERY = "SELECT genre_id FROM film_genre WHERE film_id = ? ORDER BY genre_id ASC";
+    private static final String FIND_GENRES_BY_FILMS_QUERY = """
+            SELECT film_id, genre_id FROM film_genre
+            WHERE film_id IN (%s) ORDER BY film_id ASC, genre_id ASC
             """;
-    private static final String FIND_MPA_RATINGS_QUERY = "SELECT id, name FROM rating_mpa WHERE id = ?";
     private static final String INSERT_TO_FILM_GENRES_TABLE_QUERY = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
     private static final String UPDATE_FILM_QUERY = "UPDATE films SET name=?, description=?, release_date=?, duration=?, rating_id=? WHERE id=?";
+    private static final String FIND_SEARCH_FIELDS_QUERY = "SELECT id, name, description FROM films";
     private static final String CHECK_FILM_ID = "SELECT COUNT(*) FROM films WHERE id = ?";
 
-    public FilmRepository(JdbcTemplate jdbc, RowMapper<Film> mapper, LikeRepository likeRepository) {
+    public FilmRepository(JdbcTemplate jdbc, RowMapper<Film> mapper, LikeRepository likeRepository,
+                          ReferenceDataCache referenceData, TransactionTemplate transactionTemplate,
+                          EntityVersions versions) {
         super(jdbc, mapper);
         this.likeRepository = likeRepository;
+        this.referenceData = referenceData;
+        this.transactionTemplate = transactionTemplate;
+        this.versions = versions;
     }
 
+    @PostConstruct
+    public void buildSearchIndex() {
+        int[] films = new int[1];
+        jdbc.query(FIND_SEARCH_FIELDS_QUERY, rs -> {
+            searchIndex.index(rs.getLong("id"), rs.getString("name"), rs.getString("description"));
+            films[0]++;
+        });
+        log.info("Поисковый индекс построен: {} фильмов", films[0]);
+    }
 
     @Override
     public List<Film> findAll() {
-        return findMany(FIND_ALL_QUERY);
+        return read(() -> {
+            List<Film> films = findMany(FIND_ALL_QUERY);
+            setGenresAndRatingsToFilms(films);
+            return films;
+        });
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        return read(() -> {
+            List<Film> films = findMany(FIND_PAGE_QUERY, afterId, limit);
+            setGenresAndRatingsToFilms(films);
+            return films;
+        });
+    }
+
+    @Override
+    public void exportAll(Consumer<Film> consumer) {
+        log.debug("Выгрузка всех фильмов из базы данных");
+        FilmExportHandler handler = new FilmExportHandler(consumer);
+        read(() -> stream(EXPORT_QUERY, handler));
+        handler.finish();
     }
 
     @Override
     public Optional<Film> findFilmById(Long id) {
-            Optional<Film> thisFilm = findOne(FIND_BY_ID_QUERY, id);
-            thisFilm.ifPresent(this::setGenreAndRatingToFilm);
-            return thisFilm;
+        Optional<Film> thisFilm = findOne(FIND_BY_ID_QUERY, id);
+        thisFilm.ifPresent(film -> setGenresAndRatingsToFilms(List.of(film)));
+        return thisFilm;
+    }
+
+    /**
+     * Строка фильма и его жанры запрашиваются одновременно в отдельных виртуальных потоках,
+     * рейтинг берётся из справочника в памяти. Вызывающий поток не блокируется.
+     * Ответ отдаётся под ETag текущей версии фильма и кладётся в FilmJsonCache, поэтому читается
+     * с основной базы: отстающая реплика вернула бы старый фильм под новым ETag.
+     */
+    @Override
+    public CompletableFuture<Optional<Film>> findFilmByIdAsync(Long id) {
+        CompletableFuture<Optional<Film>> film =
+                CompletableFuture.supplyAsync(() -> findOne(FIND_BY_ID_QUERY, id), countedDetailsExecutor);
+        CompletableFuture<List<Long>> genreIds = CompletableFuture.supplyAsync(
+                () -> jdbc.queryForList(FIND_GENRES_BY_FILM_QUERY, Long.class, id), countedDetailsExecutor);
+        return film.thenCombine(genreIds, (found, ids) -> {
+            found.ifPresent(thisFilm -> {
+                if (thisFilm.getMpa() != null) {
+                    referenceData.findRating(thisFilm.getMpa().getId()).ifPresent(thisFilm::setMpa);
+                }
+                Set<Genre> genres = new LinkedHashSet<>();
+                ids.forEach(genreId -> referenceData.findGenre(genreId).ifPresent(genres::add));
+                thisFilm.setGenres(genres);
+            });
+            return found;
+        });
+    }
+
+    @PreDestroy
+    public void shutdownDetailsExecutor() {
+        detailsExecutor.shutdown();
     }
 
     @Override
     public Film create(Film film) {
         log.info("Добавление фильма {} в репозитории", film);
-        long mpaId = film.getMpa().getId();
-        Integer count = jdbc.queryForObject(COUNT_OF_RATINGS_QUERY, Integer.class, mpaId);
-        if (count == null || count == 0) {
-            throw new NotFoundException("Рейтинг с таким ID " + mpaId + " не найден");
-        }
+        checkReferences(film);
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(connection -> {
@@ -71,45 +162,48 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
                     INSERT_QUERY,
                     Statement.RETURN_GENERATED_KEYS
             );
-            ps.setString(1, film.getName());
-            ps.setString(2, film.getDescription());
-            ps.setDate(3, Date.valueOf(film.getReleaseDate()));
-            ps.setInt(4, film.getDuration());
-            ps.setLong(5, mpaId);
+            setFilmValues(ps, film);
             return ps;
         }, keyHolder);
 
         film.setId(keyHolder.getKey().longValue());
+        likeRepository.addFilm(film.getId());
         jdbc.update("DELETE FROM film_genre WHERE film_id = ?", film.getId());
 
         if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            List<Long> genreIds = film.getGenres().stream()
-                    .map(Genre::getId)
-                    .toList();
-
-            String inSql = genreIds.stream()
-                    .map(id -> "?")
-                    .collect(Collectors.joining(", "));
-            List<Long> existingGenreIds = jdbc.queryForList(
-                    "SELECT id FROM genre WHERE id IN (" + inSql + ")",
-                    Long.class,
-                    genreIds.toArray()
-            );
-
-            for (Long genreId : genreIds) {
-                if (!existingGenreIds.contains(genreId)) {
-                    throw new NotFoundException("Жанр с ID " + genreId + " не найден ");
-                }
+            for (Genre genre : film.getGenres()) {
+                jdbc.update(INSERT_TO_FILM_GENRES_TABLE_QUERY, film.getId(), genre.getId());
             }
+        }
+        searchIndex.index(film.getId(), film.getName(), film.getDescription());
+        versions.filmChanged(film.getId());
+        setGenresAndRatingsToFilms(List.of(film));
+        log.debug("Фильм {} был добавлен в базу данных", film);
+        return film;
+    }
 
-            for (Long genreId : genreIds) {
+    /**
+     * Добавляет фильмы пачками по BATCH_SIZE: каждая пачка вставляется JDBC-батчем в отдельной транзакции.
+     * Если пачка не записалась, предыдущие пачки остаются в базе.
+     */
+    @Override
+    public List<Long> createAll(List<Film> films) {
+        log.info("Пакетное добавление {} фильмов в репозитории", films.size());
+        films.forEach(this::checkReferences);
 
-                jdbc.update("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", film.getId(), genreId);
+        List<Long> ids = new ArrayList<>(films.size());
+        for (int from = 0; from < films.size(); from += BATCH_SIZE) {
+            List<Film> chunk = films.subList(from, Math.min(from + BATCH_SIZE, films.size()));
+            transactionTemplate.executeWithoutResult(status -> insertChunk(chunk));
+            for (Film film : chunk) {
+                likeRepository.addFilm(film.getId());
+                searchIndex.index(film.getId(), film.getName(), film.getDescription());
+                ids.add(film.getId());
             }
         }
-        setGenreAndRatingToFilm(film);
-        log.debug("Фильм {} был добавлен в базу данных", film);
-        return film;
+        ids.forEach(versions::filmChanged);
+        log.debug("В базу данных добавлено {} фильмов", ids.size());
+        return ids;
     }
 
     @Override
@@ -138,7 +232,9 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
             }
         }
 
-        setGenreAndRatingToFilm(film);
+        searchIndex.index(film.getId(), film.getName(), film.getDescription());
+        versions.filmChanged(film.getId());
+        setGenresAndRatingsToFilms(List.of(film));
 
         log.debug("Фильм {} был обновлен в базе данных", film);
         return film;
@@ -156,10 +252,24 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
         likeRepository.deleteLike(userId, filmId);
     }
 
+    /**
+     * Список отдаётся под ETag популярных фильмов, поэтому детали читаются с основной базы, а не с реплики.
+     */
     @Override
     public Collection<Film> findPopular(int count) {
         log.debug("Запрос популярных фильмов в хранилище");
-        return likeRepository.findPopularFilms(count);
+        return loadFilmsWithDetails(likeRepository.findPopularFilmIds(count));
+    }
+
+    @Override
+    public Collection<Film> findRecommendations(Long userId, int count) {
+        return findFilmsWithDetails(likeRepository.findRecommendedFilmIds(userId, count));
+    }
+
+    @Override
+    public Collection<Film> search(String query, int count) {
+        log.debug("Поиск фильмов по запросу \"{}\"", query);
+        return findFilmsWithDetails(searchIndex.search(query, count));
     }
 
     @Override
@@ -167,21 +277,152 @@ public class FilmRepository extends BaseRepository<Film> implements FilmStorage
         return checkId(CHECK_FILM_ID, id);
     }
 
-    private void setGenreAndRatingToFilm(Film film) {
-        Mpa mpa = jdbc.queryForObject(FIND_MPA_RATINGS_QUERY, (rs, rowNum) -> {
-            Mpa mpaObj = new Mpa();
-            mpaObj.setId(rs.getLong("id"));
-            mpaObj.setName(rs.getString("name"));
-            return mpaObj;
-        }, film.getMpa().getId());
-        film.setMpa(mpa);
-
-        List<Genre> genres = jdbc.query(FIND_GENRES_BY_FILM_QUERY, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getLong("id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        }, film.getId());
-        film.setGenres(new LinkedHashSet<>(genres));
-    }
-}
\ No newline at end of file
+    private void checkReferences(Film film) {
+        long mpaId = film.getMpa().getId();
+        if (referenceData.findRating(mpaId).isEmpty()) {
+            throw new NotFoundException("Рейтинг с таким ID " + mpaId + " не найден");
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                if (referenceData.findGenre(genre.getId()).isEmpty()) {
+                    throw new NotFoundException("Жанр с ID " + genre.getId() + " не найден ");
+                }
+            }
+        }
+    }
+
+    private void setFilmValues(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+        ps.setInt(4, film.getDuration());
+        ps.setLong(5, film.getMpa().getId());
+    }
+
+    private void insertChunk(List<Film> chunk) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_QUERY, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmValues(ps, chunk.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                },
+                keyHolder
+        );
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Film film = chunk.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            if (film.getGenres() != null) {
+                for (Genre genre : film.getGenres()) {
+                    filmGenres.add(new Object[]{film.getId(), genre.getId()});
+                }
+            }
+        }
+        if (!filmGenres.isEmpty()) {
+            jdbc.batchUpdate(INSERT_TO_FILM_GENRES_TABLE_QUERY, filmGenres);
+        }
+    }
+
+    private List<Film> findFilmsWithDetails(List<Long> ids) {
+        return read(() -> loadFilmsWithDetails(ids));
+    }
+
+    private List<Film> loadFilmsWithDetails(List<Long> ids) {
+        List<Film> films = findFilmsByIds(ids);
+        setGenresAndRatingsToFilms(films);
+        return films;
+    }
+
+    private List<Film> findFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            Object[] chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())).toArray();
+            for (Film film : findMany(String.format(FIND_BY_IDS_QUERY, inPlaceholders(chunk.length)), chunk)) {
+                filmsById.put(film.getId(), film);
+            }
+        }
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Заполняет рейтинг и жанры для всего списка фильмов запросами к film_genre по BATCH_SIZE фильмов,
+     * чтобы список IN (...) оставался ограниченным. Названия берутся из справочников в памяти.
+     */
+    private void setGenresAndRatingsToFilms(Collection<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+            film.setGenres(new LinkedHashSet<>());
+            if (film.getMpa() != null) {
+                referenceData.findRating(film.getMpa().getId()).ifPresent(film::setMpa);
+            }
+        }
+
+        Object[] filmIds = filmsById.keySet().toArray();
+        for (int from = 0; from < filmIds.length; from += BATCH_SIZE) {
+            Object[] chunk = Arrays.copyOfRange(filmIds, from, Math.min(from + BATCH_SIZE, filmIds.length));
+            jdbc.query(String.format(FIND_GENRES_BY_FILMS_QUERY, inPlaceholders(chunk.length)), rs -> {
+                Film film = filmsById.get(rs.getLong("film_id"));
+                referenceData.findGenre(rs.getLong("genre_id")).ifPresent(film.getGenres()::add);
+            }, chunk);
+        }
+    }
+
+    /**
+     * Собирает фильмы из строк выгрузки: строки одного фильма идут подряд (по одной на жанр),
+     * фильм передаётся дальше, как только начинаются строки следующего.
+     */
+    private class FilmExportHandler implements RowCallbackHandler {
+        private final Consumer<Film> consumer;
+        private Film current;
+        private List<Genre> genres = new ArrayList<>();
+
+        FilmExportHandler(Consumer<Film> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long filmId = rs.getLong("id");
+            if (current == null || current.getId() != filmId) {
+                finish();
+                current = mapper.mapRow(rs, rs.getRow());
+                referenceData.findRating(current.getMpa().getId()).ifPresent(current::setMpa);
+            }
+            long genreId = rs.getLong("genre_id");
+            if (!rs.wasNull()) {
+                referenceData.findGenre(genreId).ifPresent(genres::add);
+            }
+        }
+
+        void finish() {
+            if (current == null) {
+                return;
+            }
+            genres.sort(Comparator.comparing(Genre::getId));
+            current.setGenres(new LinkedHashSet<>(genres));
+            consumer.accept(current);
+            current = null;
+            genres = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Обратный индекс по названию и описанию фильмов. Слова приводятся к нижнему регистру по правилам
+ * русского языка, «ё» заменяется на «е». Словарь отсортирован, поэтому запрос «слово*» находит
+ * все слова с этим префиксом без перебора. Результаты ранжируются по TF-IDF, совпадение в названии
+ * весит больше, чем в описании.
+ */
+public class FilmSearchIndex {
+    private static final Locale RUSSIAN = Locale.forLanguageTag("ru");
+    private static final float NAME_WEIGHT = 3;
+    private static final float DESCRIPTION_WEIGHT = 1;
+
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, List<String>> termsByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Добавляет фильм в индекс или заменяет его прежние слова новыми.
+     */
+    public void index(long filmId, String name, String description) {
+        Map<String, Float> weights = new HashMap<>();
+        tokenize(name).forEach(term -> weights.merge(term, NAME_WEIGHT, Float::sum));
+        tokenize(description).forEach(term -> weights.merge(term, DESCRIPTION_WEIGHT, Float::sum));
+
+        lock.writeLock().lock();
+        try {
+            removeTerms(filmId);
+            weights.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(filmId, weight));
+            termsByFilm.put(filmId, new ArrayList<>(weights.keySet()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет фильмы по словам запроса и возвращает id лучших count фильмов. Фильм находится, если
+     * совпало хотя бы одно слово; чем больше слов и чем они реже, тем выше фильм в выдаче.
+     * Слово со звёздочкой на конце ищется как префикс.
+     */
+    public List<Long> search(String query, int count) {
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int films = termsByFilm.size();
+            for (String word : query.trim().split("\\s+")) {
+                boolean prefix = word.endsWith("*");
+                for (String term : tokenize(word)) {
+                    Map<String, Map<Long, Float>> matches = prefix
+                            ? postings.subMap(term, true, term + Character.MAX_VALUE, false)
+                            : postings.containsKey(term) ? Map.of(term, postings.get(term)) : Map.of();
+                    matches.values().forEach(filmWeights -> {
+                        double idf = Math.log(1 + (double) films / filmWeights.size());
+                        filmWeights.forEach((filmId, weight) -> scores.merge(filmId, weight * idf, Double::sum));
+                    });
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String normalized = text.toLowerCase(RUSSIAN).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private void removeTerms(long filmId) {
+        List<String> terms = termsByFilm.remove(filmId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Float> filmWeights = postings.get(term);
+            filmWeights.remove(filmId);
+            if (filmWeights.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package ru.yandex.practicum.filmorate.dal.friendship;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя хранится отсортированный массив id его друзей.
+ * Массивы не изменяются после публикации — добавление и удаление друга создают новую копию,
+ * поэтому читатели работают без блокировок. Граф целиком публикуется одной заменой ссылки.
+ */
+public class FriendshipGraph {
+    private static final long[] NO_FRIENDS = new long[0];
+    private static final int PARALLEL_THRESHOLD = 200_000;
+    private static final int RANK_LEAF_SIZE = 50_000;
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Map<Long, long[]> friendsByUser = new ConcurrentHashMap<>();
+    private volatile Queue<Change> pendingChanges;
+
+    /**
+     * Перезагружает граф. Источник передаёт связи по одной, без промежуточной коллекции объектов.
+     * Новый граф собирается отдельно и публикуется одной заменой ссылки; связи, добавленные или
+     * удалённые во время загрузки, повторяются на новом графе перед заменой и не теряются.
+     */
+    public synchronized void load(Consumer<EdgeConsumer> source) {
+        Queue<Change> changes = new ConcurrentLinkedQueue<>();
+        pendingChanges = changes;
+        try {
+            Map<Long, Adjacency> adjacencies = new HashMap<>();
+            source.accept((userId, friendId) ->
+                    adjacencies.computeIfAbsent(userId, id -> new Adjacency()).add(friendId));
+            Map<Long, long[]> loaded = new ConcurrentHashMap<>();
+            adjacencies.forEach((userId, adjacency) -> loaded.put(userId, adjacency.toSortedArray()));
+            swapLock.writeLock().lock();
+            try {
+                changes.forEach(change -> apply(loaded, change.userId(), change.friendId(), change.added()));
+                friendsByUser = loaded;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        } finally {
+            pendingChanges = null;
+        }
+    }
+
+    public void addFriend(long userId, long friendId) {
+        change(userId, friendId, true);
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        change(userId, friendId, false);
+    }
+
+    /**
+     * Возвращает отсортированные id друзей пользователя. Массив общий, изменять его нельзя.
+     */
+    public long[] findFriends(long userId) {
+        return friendsByUser.getOrDefault(userId, NO_FRIENDS);
+    }
+
+    public long[] findCommonFriends(long userId, long otherId) {
+        Map<Long, long[]> graph = friendsByUser;
+        return intersect(graph.getOrDefault(userId, NO_FRIENDS), graph.getOrDefault(otherId, NO_FRIENDS));
+    }
+
+    /**
+     * Возвращает id друзей друзей пользователя, которые ещё не у него в друзьях, в порядке убывания
+     * числа общих друзей, при равенстве — по возрастанию id. Списки друзей всех друзей склеиваются
+     * в один массив и сортируются, после чего число общих друзей — это длина серии одинаковых id.
+     * Большие окрестности сортируются и считаются параллельно в общем пуле fork-join.
+     */
+    public long[] suggestFriends(long userId, int count) {
+        Map<Long, long[]> graph = friendsByUser;
+        long[] friends = graph.getOrDefault(userId, NO_FRIENDS);
+        long[][] friendsOfFriends = new long[friends.length][];
+        long total = 0;
+        for (int i = 0; i < friends.length; i++) {
+            friendsOfFriends[i] = graph.getOrDefault(friends[i], NO_FRIENDS);
+            total += friendsOfFriends[i].length;
+        }
+        long[] candidates = new long[Math.toIntExact(total)];
+        int offset = 0;
+        for (long[] ids : friendsOfFriends) {
+            System.arraycopy(ids, 0, candidates, offset, ids.length);
+            offset += ids.length;
+        }
+
+        RankTask task = new RankTask(candidates, 0, candidates.length, userId, friends, count);
+        if (candidates.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(candidates);
+            return ForkJoinPool.commonPool().invoke(task).toRankedIds();
+        }
+        Arrays.sort(candidates);
+        return task.rank().toRankedIds();
+    }
+
+    private void change(long userId, long friendId, boolean added) {
+        swapLock.readLock().lock();
+        try {
+            apply(friendsByUser, userId, friendId, added);
+            Queue<Change> changes = pendingChanges;
+            if (changes != null) {
+                changes.add(new Change(userId, friendId, added));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static void apply(Map<Long, long[]> graph, long userId, long friendId, boolean added) {
+        if (added) {
+            graph.compute(userId, (id, friends) -> {
+                long[] current = friends == null ? NO_FRIENDS : friends;
+                int index = Arrays.binarySearch(current, friendId);
+                if (index >= 0) {
+                    return current;
+                }
+                int insertAt = -index - 1;
+                long[] updated = new long[current.length + 1];
+                System.arraycopy(current, 0, updated, 0, insertAt);
+                updated[insertAt] = friendId;
+                System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+                return updated;
+            });
+        } else {
+            graph.computeIfPresent(userId, (id, friends) -> {
+                int index = Arrays.binarySearch(friends, friendId);
+                if (index < 0) {
+                    return friends;
+                }
+                if (friends.length == 1) {
+                    return null;
+                }
+                long[] updated = new long[friends.length - 1];
+                System.arraycopy(friends, 0, updated, 0, index);
+                System.arraycopy(friends, index + 1, updated, index, friends.length - index - 1);
+                return updated;
+            });
+        }
+    }
+
+    /**
+     * Пересечение двух отсортированных массивов слиянием за O(n + m).
+     */
+    static long[] intersect(long[] first, long[] second) {
+        long[] common = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == common.length ? common : Arrays.copyOf(common, size);
+    }
+
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        void accept(long userId, long friendId);
+    }
+
+    private static final class Adjacency {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long friendId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = friendId;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Подсчёт серий в отсортированном массиве кандидатов. Диапазон делится пополам по границе серии,
+     * каждая половина отбирает свои лучшие count кандидатов, результаты сливаются.
+     */
+    private static final class RankTask extends RecursiveTask<TopSuggestions> {
+        private final long[] candidates;
+        private final int from;
+        private final int to;
+        private final long userId;
+        private final long[] friends;
+        private final int count;
+
+        RankTask(long[] candidates, int from, int to, long userId, long[] friends, int count) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.userId = userId;
+            this.friends = friends;
+            this.count = count;
+        }
+
+        @Override
+        protected TopSuggestions compute() {
+            if (to - from <= RANK_LEAF_SIZE) {
+                return rank();
+            }
+            int middle = (from + to) >>> 1;
+            while (middle < to && candidates[middle] == candidates[middle - 1]) {
+                middle++;
+            }
+            if (middle == to) {
+                return rank();
+            }
+            RankTask left = new RankTask(candidates, from, middle, userId, friends, count);
+            left.fork();
+            TopSuggestions right = new RankTask(candidates, middle, to, userId, friends, count).compute();
+            return left.join().merge(right);
+        }
+
+        TopSuggestions rank() {
+            TopSuggestions top = new TopSuggestions(count);
+            int i = from;
+            while (i < to) {
+                long candidate = candidates[i];
+                int runEnd = i + 1;
+                while (runEnd < to && candidates[runEnd] == candidate) {
+                    runEnd++;
+                }
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    top.offer(candidate, runEnd - i);
+                }
+                i = runEnd;
+            }
+            return top;
+        }
+    }
+
+    private static final class TopSuggestions {
+        private static final Comparator<Suggestion> BEST_FIRST = Comparator
+                .comparingInt(Suggestion::mutualFriends).reversed()
+                .thenComparingLong(Suggestion::userId);
+
+        private final int count;
+        private final PriorityQueue<Suggestion> worstFirst = new PriorityQueue<>(BEST_FIRST.reversed());
+
+        TopSuggestions(int count) {
+            this.count = count;
+        }
+
+        void offer(long userId, int mutualFriends) {
+            Suggestion suggestion = new Suggestion(userId, mutualFriends);
+            if (worstFirst.size() < count) {
+                worstFirst.add(suggestion);
+            } else if (count > 0 && BEST_FIRST.compare(suggestion, worstFirst.peek()) < 0) {
+                worstFirst.poll();
+                worstFirst.add(suggestion);
+            }
+        }
+
+        TopSuggestions merge(TopSuggestions other) {
+            other.worstFirst.forEach(suggestion -> offer(suggestion.userId(), suggestion.mutualFriends()));
+            return this;
+        }
+
+        long[] toRankedIds() {
+            return worstFirst.stream()
+                    .sorted(BEST_FIRST)
+                    .mapToLong(Suggestion::userId)
+                    .toArray();
+        }
+    }
+
+    private record Change(long userId, long friendId, boolean added) {
+    }
+
+    private record Suggestion(long userId, int mutualFriends) {
+    }
+}
@@ -1,52 +1,164 @@
 package ru.yandex.practicum.filmorate.dal.friendship;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dal.BaseRepository;
 import ru.yandex.practicum.filmorate.dal.user.UserRowMapper;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Slf4j
 @Repository
 public class FriendshipRepository extends BaseRepository<Friendship> {
-    private static final String FIND_FRIENDS_BY_USER_QUERY = "SELECT u.* FROM users u JOIN friendship f ON u.id = f.friend_id WHERE f.user_id = ?";
-    private static final String INSERT_QUERY_FOR_ADD_FRIEND = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
+    private static final int BATCH_SIZE = 1000;
+    private static final String FIND_ALL_EDGES_QUERY = "SELECT user_id, friend_id FROM friendship";
+    private static final String FIND_USERS_BY_IDS_QUERY = "SELECT * FROM users WHERE id IN (%s)";
+    private static final String USER_FK = "friendship_user_fk";
+    private static final String FRIEND_FK = "friendship_friend_fk";
+    private static final String MERGE_QUERY_FOR_ADD_FRIEND = """
+            MERGE INTO friendship f USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS v(user_id, friend_id)
+            ON f.user_id = v.user_id AND f.friend_id = v.friend_id
+            WHEN NOT MATCHED THEN INSERT (user_id, friend_id) VALUES (v.user_id, v.friend_id)""";
     private static final String DELETE_QUERY = "DELETE FROM friendship WHERE (user_id = ? AND friend_id = ?)";
-    private static final String FIND_COMMON_FRIENDS_QUERY = """
-            SELECT u.* FROM friendship f1
-            JOIN friendship f2 ON f1.friend_id = f2.friend_id
-            JOIN users u ON u.id = f1.friend_id
-            WHERE f1.user_id = ? AND f2.user_id = ?
-            """;
+    private static final String COUNT_USERS_QUERY = """
+            SELECT (SELECT COUNT(*) FROM users WHERE id = ?) AS users,
+                   (SELECT COUNT(*) FROM users WHERE id = ?) AS friends""";
 
+    private final FriendshipGraph graph = new FriendshipGraph();
+    private final EntityVersions versions;
 
-    public FriendshipRepository(JdbcTemplate jdbc, RowMapper<Friendship> mapper) {
+    public FriendshipRepository(JdbcTemplate jdbc, RowMapper<Friendship> mapper, EntityVersions versions) {
         super(jdbc, mapper);
+        this.versions = versions;
     }
 
+    @PostConstruct
+    public void loadGraph() {
+        int[] edges = new int[1];
+        graph.load(consumer -> jdbc.query(FIND_ALL_EDGES_QUERY, rs -> {
+            consumer.accept(rs.getLong("user_id"), rs.getLong("friend_id"));
+            edges[0]++;
+        }));
+        versions.usersChanged();
+        log.info("Граф дружбы загружен: {} связей", edges[0]);
+    }
+
+    /**
+     * Список друзей отдаётся под ETag версии друзей пользователя, поэтому читается с основной базы.
+     */
     public List<User> findFriendsByUserId(Long userId) {
         log.debug("Запрос всех пользователей из базы данных");
-        return jdbc.query(FIND_FRIENDS_BY_USER_QUERY, new UserRowMapper(), userId);
+        return loadUsersByIds(graph.findFriends(userId));
+    }
+
+    public long[] findFriendIds(Long userId) {
+        return graph.findFriends(userId);
+    }
+
+    /**
+     * Друзья друзей, ранжированные по числу общих друзей.
+     */
+    public List<User> findFriendSuggestions(Long userId, int count) {
+        log.debug("Запрос рекомендаций друзей для пользователя (Id: {})", userId);
+        long[] ranked = graph.suggestFriends(userId, count);
+        Map<Long, User> usersById = new HashMap<>();
+        findUsersByIds(ranked).forEach(user -> usersById.put(user.getId(), user));
+        return Arrays.stream(ranked)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
+    /**
+     * Добавляет друга одним запросом MERGE, повторное добавление ничего не меняет.
+     * Несуществующий пользователь определяется по нарушенному внешнему ключу.
+     */
     public void putFriend(Long userId, Long friendId) {
         log.debug("Добавляем в друзья {} и {}", userId, friendId);
-        update(INSERT_QUERY_FOR_ADD_FRIEND, userId, friendId);
+        int inserted;
+        try {
+            inserted = jdbc.update(MERGE_QUERY_FOR_ADD_FRIEND, userId, friendId);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e, userId, friendId);
+        }
+        if (inserted > 0) {
+            graph.addFriend(userId, friendId);
+            versions.friendsChanged(userId);
         }
+    }
 
+    /**
+     * Удаляет друга одним запросом; существование пользователей проверяется, только если удалять было нечего.
+     */
     public void deleteFriend(Long userId, Long friendId) {
         log.debug("Запрос удаления пользователя (Id: {}) из списка друзей пользователя (Id: {})", friendId, userId);
-        delete(DELETE_QUERY, userId, friendId);
+        if (jdbc.update(DELETE_QUERY, userId, friendId) == 0) {
+            checkUsers(userId, friendId);
+            return;
+        }
+        graph.removeFriend(userId, friendId);
+        versions.friendsChanged(userId);
     }
 
     public Collection<User> findCommonFriends(Long userId, Long friendId) {
         log.debug("Запрос вывода общих друзей пользователя (Id: {}) и пользователя (Id: {})", userId, friendId);
-        return jdbc.query(FIND_COMMON_FRIENDS_QUERY, new UserRowMapper(), userId, friendId);
+        return findUsersByIds(graph.findCommonFriends(userId, friendId));
+    }
+
+    /**
+     * Загружает пользователей по массиву id с реплики. Используется только эндпоинтами на чтение без ETag.
+     */
+    public List<User> findUsersByIds(long[] ids) {
+        return read(() -> loadUsersByIds(ids));
+    }
+
+    /**
+     * Загружает пользователей по массиву id пачками по BATCH_SIZE, порядок — по возрастанию id.
+     */
+    private List<User> loadUsersByIds(long[] ids) {
+        List<User> users = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+            Object[] chunk = Arrays.stream(ids, from, Math.min(from + BATCH_SIZE, ids.length)).boxed().toArray();
+            users.addAll(jdbc.query(String.format(FIND_USERS_BY_IDS_QUERY, inPlaceholders(chunk.length)),
+                    new UserRowMapper(), chunk));
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    private void checkUsers(Long userId, Long friendId) {
+        jdbc.query(COUNT_USERS_QUERY, rs -> {
+            if (rs.getInt("users") == 0) {
+                throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+            }
+            if (rs.getInt("friends") == 0) {
+                throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
+            }
+        }, userId, friendId);
+    }
+
+    private RuntimeException translate(DataIntegrityViolationException e, Long userId, Long friendId) {
+        if (violates(e, USER_FK)) {
+            return new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        if (violates(e, FRIEND_FK)) {
+            return new NotFoundException("Пользователь с id = " + friendId + " не найден");
+        }
+        return e;
     }
-}
\ No newline at end of file
+}
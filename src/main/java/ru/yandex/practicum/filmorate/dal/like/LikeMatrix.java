@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate.dal.like;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Матрица лайков пользователь × фильм в памяти. Хранится в сжатом разреженном виде: по каждому
+ * пользователю — отсортированный массив id фильмов, по каждому фильму — отсортированный массив id
+ * пользователей. Массивы не изменяются после публикации, изменения создают новую копию.
+ * Обе карты публикуются вместе одной заменой ссылки на {@link Matrix}.
+ */
+public class LikeMatrix {
+    private static final long[] EMPTY = new long[0];
+    private static final int PARALLEL_THRESHOLD = 50_000;
+    private static final int NEIGHBOURS = 50;
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Matrix matrix = new Matrix();
+    private volatile Queue<Change> pendingChanges;
+
+    /**
+     * Перезагружает матрицу. Источник передаёт лайки по одному. Новая матрица собирается отдельно
+     * и публикуется одной заменой ссылки; лайки, поставленные или снятые во время загрузки,
+     * повторяются на новой матрице перед заменой и не теряются.
+     */
+    public synchronized void load(Consumer<LikeConsumer> source) {
+        Queue<Change> changes = new ConcurrentLinkedQueue<>();
+        pendingChanges = changes;
+        try {
+            Map<Long, Ids> films = new HashMap<>();
+            Map<Long, Ids> users = new HashMap<>();
+            source.accept((userId, filmId) -> {
+                films.computeIfAbsent(userId, id -> new Ids()).add(filmId);
+                users.computeIfAbsent(filmId, id -> new Ids()).add(userId);
+            });
+            Matrix loaded = new Matrix();
+            films.forEach((userId, ids) -> loaded.filmsByUser.put(userId, ids.toSortedArray()));
+            users.forEach((filmId, ids) -> loaded.usersByFilm.put(filmId, ids.toSortedArray()));
+            swapLock.writeLock().lock();
+            try {
+                changes.forEach(change -> loaded.apply(change.userId(), change.filmId(), change.liked()));
+                matrix = loaded;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        } finally {
+            pendingChanges = null;
+        }
+    }
+
+    public void addLike(long userId, long filmId) {
+        change(userId, filmId, true);
+    }
+
+    public void removeLike(long userId, long filmId) {
+        change(userId, filmId, false);
+    }
+
+    /**
+     * Рекомендует фильмы, которые лайкали похожие пользователи. Похожесть — коэффициент Жаккара
+     * по множествам лайкнутых фильмов; берутся NEIGHBOURS самых похожих пользователей, фильм получает
+     * сумму похожестей тех, кто его лайкнул. Уже лайкнутые пользователем фильмы не рекомендуются.
+     * Для больших выборок сортировка и расчёт похожести выполняются параллельно.
+     */
+    public long[] recommendFilms(long userId, int count) {
+        Map<Long, long[]> filmsByUser = matrix.filmsByUser;
+        Map<Long, long[]> usersByFilm = matrix.usersByFilm;
+        long[] liked = filmsByUser.getOrDefault(userId, EMPTY);
+        if (liked.length == 0) {
+            return EMPTY;
+        }
+
+        // Все пользователи, лайкнувшие те же фильмы: длина серии одинаковых id — число общих лайков
+        long[][] likers = new long[liked.length][];
+        long total = 0;
+        for (int i = 0; i < liked.length; i++) {
+            likers[i] = usersByFilm.getOrDefault(liked[i], EMPTY);
+            total += likers[i].length;
+        }
+        long[] candidates = new long[Math.toIntExact(total)];
+        int offset = 0;
+        for (long[] users : likers) {
+            System.arraycopy(users, 0, candidates, offset, users.length);
+            offset += users.length;
+        }
+        boolean parallel = candidates.length >= PARALLEL_THRESHOLD;
+        if (parallel) {
+            Arrays.parallelSort(candidates);
+        } else {
+            Arrays.sort(candidates);
+        }
+
+        int[] runStarts = new int[candidates.length];
+        int runs = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (i == 0 || candidates[i] != candidates[i - 1]) {
+                runStarts[runs++] = i;
+            }
+        }
+        int runCount = runs;
+        IntStream indexes = IntStream.range(0, runCount);
+        Neighbour[] neighbours = (parallel ? indexes.parallel() : indexes)
+                .mapToObj(run -> {
+                    long neighbourId = candidates[runStarts[run]];
+                    if (neighbourId == userId) {
+                        return null;
+                    }
+                    int end = run + 1 < runCount ? runStarts[run + 1] : candidates.length;
+                    int common = end - runStarts[run];
+                    int neighbourLikes = filmsByUser.getOrDefault(neighbourId, EMPTY).length;
+                    return new Neighbour(neighbourId, (double) common / (liked.length + neighbourLikes - common));
+                })
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingDouble(Neighbour::similarity).reversed()
+                        .thenComparingLong(Neighbour::userId))
+                .limit(NEIGHBOURS)
+                .toArray(Neighbour[]::new);
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : neighbours) {
+            for (long filmId : filmsByUser.getOrDefault(neighbour.userId(), EMPTY)) {
+                if (Arrays.binarySearch(liked, filmId) < 0) {
+                    scores.merge(filmId, neighbour.similarity(), Double::sum);
+                }
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private void change(long userId, long filmId, boolean liked) {
+        swapLock.readLock().lock();
+        try {
+            matrix.apply(userId, filmId, liked);
+            Queue<Change> changes = pendingChanges;
+            if (changes != null) {
+                changes.add(new Change(userId, filmId, liked));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        long[] current = ids == null ? EMPTY : ids;
+        int index = Arrays.binarySearch(current, id);
+        if (index >= 0) {
+            return current;
+        }
+        int insertAt = -index - 1;
+        long[] updated = new long[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, insertAt);
+        updated[insertAt] = id;
+        System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+        return updated;
+    }
+
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] updated = new long[ids.length - 1];
+        System.arraycopy(ids, 0, updated, 0, index);
+        System.arraycopy(ids, index + 1, updated, index, ids.length - index - 1);
+        return updated;
+    }
+
+    @FunctionalInterface
+    public interface LikeConsumer {
+        void accept(long userId, long filmId);
+    }
+
+    private static final class Ids {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static final class Matrix {
+        private final Map<Long, long[]> filmsByUser = new ConcurrentHashMap<>();
+        private final Map<Long, long[]> usersByFilm = new ConcurrentHashMap<>();
+
+        void apply(long userId, long filmId, boolean liked) {
+            if (liked) {
+                filmsByUser.compute(userId, (id, films) -> insert(films, filmId));
+                usersByFilm.compute(filmId, (id, users) -> insert(users, userId));
+            } else {
+                filmsByUser.computeIfPresent(userId, (id, films) -> remove(films, filmId));
+                usersByFilm.computeIfPresent(filmId, (id, users) -> remove(users, userId));
+            }
+        }
+    }
+
+    private record Change(long userId, long filmId, boolean liked) {
+    }
+
+    private record Neighbour(long userId, double similarity) {
+    }
+}
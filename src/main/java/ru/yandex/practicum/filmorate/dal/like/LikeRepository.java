@@ -1,43 +1,403 @@
 
 package ru.yandex.practicum.filmorate.dal.like;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.dal.BaseRepository;
-import ru.yandex.practicum.filmorate.dal.film.FilmRowMapper;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 
-import java.util.Collection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
 public class LikeRepository extends BaseRepository<Like> {
-    private static final String INSERT_QUERY = "INSERT INTO likes(user_id, film_id) VALUES (?, ?)";
+    private static final String USER_FK = "likes_user_fk";
+    private static final String FILM_FK = "likes_film_fk";
+    private static final String MERGE_QUERY = """
+            MERGE INTO likes l USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS v(user_id, film_id)
+            ON l.user_id = v.user_id AND l.film_id = v.film_id
+            WHEN NOT MATCHED THEN INSERT (user_id, film_id) VALUES (v.user_id, v.film_id)""";
     private static final String DELETE_QUERY = "DELETE FROM likes WHERE user_id = ? AND film_id = ?";
+    private static final String COUNT_REFERENCES_QUERY = """
+            SELECT (SELECT COUNT(*) FROM films WHERE id = ?) AS films,
+                   (SELECT COUNT(*) FROM users WHERE id = ?) AS users""";
+    private static final String COUNT_LIKES_BY_FILM_QUERY = """
+            SELECT f.id, COUNT(fl.user_id) AS likes
+            FROM films f LEFT JOIN likes fl ON f.id = fl.film_id GROUP BY f.id""";
+    private static final String FIND_ALL_LIKES_QUERY = "SELECT user_id, film_id FROM likes";
     private static final String FIND_POPULAR_FILMS_QUERY = """
-            SELECT f.id, f.name, f.description, f.release_date, f.duration, f.rating_id, COUNT(fl.user_id) AS likes
+            SELECT f.id, COUNT(fl.user_id) AS likes
             FROM films f LEFT JOIN likes fl ON f.id = fl.film_id GROUP BY f.id ORDER BY likes DESC, f.id ASC LIMIT ?""";
+    private static final String FIND_FILM_IDS_QUERY = "SELECT id FROM films";
+    private static final String FIRST_FILM_IDS_QUERY = "SELECT id FROM films ORDER BY id ASC LIMIT ?";
+    private static final String COUNT_SHARD_LIKES_BY_FILM_QUERY = """
+            SELECT film_id AS id, COUNT(*) AS likes FROM likes GROUP BY film_id""";
+    private static final String FIND_SHARD_POPULAR_FILMS_QUERY = """
+            SELECT film_id AS id, COUNT(*) AS likes FROM likes GROUP BY film_id ORDER BY likes DESC, film_id ASC LIMIT ?""";
+    private static final RowMapper<PopularityLeaderboard.Rank> RANK_MAPPER =
+            (rs, rowNum) -> new PopularityLeaderboard.Rank(rs.getLong("id"), rs.getLong("likes"));
 
-    public LikeRepository(JdbcTemplate jdbc, RowMapper<Like> mapper) {
+    private final PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+    private final LikeMatrix likeMatrix = new LikeMatrix();
+    private final int reconcileDepth;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityVersions versions;
+    private final LikeWriteBuffer writeBuffer;
+    private final int flushBatchSize;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final LikeShards shards;
+
+    public LikeRepository(JdbcTemplate jdbc, RowMapper<Like> mapper, TransactionTemplate transactionTemplate,
+                          EntityVersions versions, Optional<LikeShards> shards,
+                          @Value("${filmorate.popular.reconcile-depth:100}") int reconcileDepth,
+                          @Value("${filmorate.likes.write-behind.enabled:false}") boolean writeBehind,
+                          @Value("${filmorate.likes.write-behind.batch-size:500}") int flushBatchSize,
+                          @Value("${filmorate.likes.write-behind.flush-interval:PT1S}") Duration flushInterval) {
         super(jdbc, mapper);
+        this.reconcileDepth = reconcileDepth;
+        this.transactionTemplate = transactionTemplate;
+        this.versions = versions;
+        this.flushBatchSize = flushBatchSize;
+        this.shards = shards.orElse(null);
+        if (writeBehind) {
+            writeBuffer = new LikeWriteBuffer();
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "likes-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushLikesSafely,
+                    flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Включена отложенная запись лайков: пачка {}, интервал {}", flushBatchSize, flushInterval);
+        } else {
+            writeBuffer = null;
+            flusher = null;
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        loadLeaderboard();
+        loadLikeMatrix();
+    }
+
+    public synchronized void loadLeaderboard() {
+        Map<Long, Long> likesByFilm = new HashMap<>();
+        leaderboard.load(() -> {
+            // Записи лайков ждут окончания загрузки, поэтому буфер и база согласованы между собой
+            Map<Long, Long> buffered = new HashMap<>();
+            if (writeBuffer != null) {
+                writeBuffer.addExpectedDeltas(buffered);
+            }
+            if (shards == null) {
+                jdbc.query(COUNT_LIKES_BY_FILM_QUERY, rs -> {
+                    likesByFilm.put(rs.getLong("id"), rs.getLong("likes"));
+                });
+            } else {
+                jdbc.query(FIND_FILM_IDS_QUERY, rs -> {
+                    likesByFilm.put(rs.getLong("id"), 0L);
+                });
+                shards.forEach(COUNT_SHARD_LIKES_BY_FILM_QUERY, rs -> {
+                    // Лайки фильмов, которых уже нет в основной базе, не учитываются
+                    long likes = rs.getLong("likes");
+                    likesByFilm.computeIfPresent(rs.getLong("id"), (id, counted) -> counted + likes);
+                });
+            }
+            buffered.forEach((filmId, delta) -> likesByFilm.merge(filmId, delta, Long::sum));
+            return likesByFilm;
+        });
+        versions.popularChanged();
+        log.info("Рейтинг популярных фильмов загружен: {} фильмов", likesByFilm.size());
     }
 
+    public void loadLikeMatrix() {
+        int[] likes = new int[1];
+        likeMatrix.load(consumer -> {
+            RowCallbackHandler handler = rs -> {
+                consumer.accept(rs.getLong("user_id"), rs.getLong("film_id"));
+                likes[0]++;
+            };
+            if (shards == null) {
+                jdbc.query(FIND_ALL_LIKES_QUERY, handler);
+            } else {
+                shards.forEach(FIND_ALL_LIKES_QUERY, handler);
+            }
+        });
+        log.info("Матрица лайков загружена: {} лайков", likes[0]);
+    }
+
+    /**
+     * Ставит лайк одним запросом MERGE: повторный лайк ничего не меняет. Несуществующие фильм
+     * или пользователь определяются по нарушенному внешнему ключу, без отдельных проверок id.
+     * В шардах внешних ключей нет, поэтому перед записью id проверяются по основной базе.
+     */
     public void putLike(Long userId, Long filmId) {
         log.debug("Запрос лайка от пользователя (Id: {}) на фильм (Id: {})", userId, filmId);
-        jdbc.update(INSERT_QUERY, userId, filmId);
+        if (writeBuffer != null) {
+            checkReferences(userId, filmId);
+            enqueue(userId, filmId, true);
+            return;
+        }
+        if (shards != null) {
+            checkReferences(userId, filmId);
+        }
+        int inserted = leaderboard.write(() -> {
+            int rows = insertLike(userId, filmId);
+            if (rows > 0) {
+                leaderboard.increment(filmId);
+            }
+            return rows;
+        });
+        if (inserted > 0) {
+            versions.popularChanged();
+        }
+        likeMatrix.addLike(userId, filmId);
+    }
+
+    private int insertLike(Long userId, Long filmId) {
+        if (shards != null) {
+            return shards.update(MERGE_QUERY, userId, filmId);
+        }
+        try {
+            return jdbc.update(MERGE_QUERY, userId, filmId);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e, userId, filmId);
+        }
     }
 
+    /**
+     * Снимает лайк одним запросом. Если удалять было нечего, проверяет, существуют ли фильм
+     * и пользователь: повтор снятия лайка проходит без ошибки, неизвестный id даёт NotFoundException.
+     */
     public void deleteLike(Long userId, Long filmId) {
         log.debug("Запрос удаления лайка пользователя (Id: {}) с фильма (Id: {})", userId, filmId);
-        jdbc.update(DELETE_QUERY, userId, filmId);
+        if (writeBuffer != null) {
+            checkReferences(userId, filmId);
+            enqueue(userId, filmId, false);
+            return;
+        }
+        int deleted = leaderboard.write(() -> {
+            int rows = shards == null
+                    ? jdbc.update(DELETE_QUERY, userId, filmId)
+                    : shards.update(DELETE_QUERY, userId, filmId);
+            if (rows > 0) {
+                leaderboard.decrement(filmId);
+            }
+            return rows;
+        });
+        if (deleted > 0) {
+            versions.popularChanged();
+        } else {
+            checkReferences(userId, filmId);
+        }
+        likeMatrix.removeLike(userId, filmId);
     }
 
-    public Collection<Film> findPopularFilms(int count) {
+    /**
+     * Записывает накопленные лайки в базу данных: лайки и снятия лайков уходят двумя батчами.
+     * Запись идемпотентна, поэтому рейтинг поправляется на разницу между ожидаемым и фактическим
+     * числом изменённых строк. Батч пишется в одной транзакции; если он не прошёл, строки повторяются
+     * по одной, ошибочные пропускаются.
+     */
+    public synchronized void flushLikes() {
+        if (writeBuffer == null) {
+            return;
+        }
+        // Выгрузка из буфера и запись в базу идут вместе: при загрузке рейтинга событие учтено ровно в одном из них
+        List<LikeWriteBuffer.Event> events = new ArrayList<>();
+        List<LikeWriteBuffer.Event> likes = new ArrayList<>();
+        List<LikeWriteBuffer.Event> unlikes = new ArrayList<>();
+        leaderboard.write(() -> {
+            events.addAll(writeBuffer.drain());
+            for (LikeWriteBuffer.Event event : events) {
+                (event.liked() ? likes : unlikes).add(event);
+            }
+            write(MERGE_QUERY, likes, 1);
+            write(DELETE_QUERY, unlikes, -1);
+            return null;
+        });
+        if (events.isEmpty()) {
+            return;
+        }
+        log.debug("Записано {} отложенных событий лайков: {} лайков, {} снятий", events.size(),
+                likes.size(), unlikes.size());
+    }
+
+    @PreDestroy
+    public void drainWriteBuffer() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushLikes();
+        log.info("Отложенные лайки записаны перед остановкой");
+    }
+
+    public void addFilm(Long filmId) {
+        leaderboard.addFilm(filmId);
+    }
+
+    public List<Long> findPopularFilmIds(int count) {
         log.debug("Запрос на список {} популярных фильмов", count);
-        return jdbc.query(FIND_POPULAR_FILMS_QUERY, new FilmRowMapper(), count);
+        return leaderboard.findTop(count);
+    }
+
+    public List<Long> findRecommendedFilmIds(Long userId, int count) {
+        log.debug("Запрос рекомендаций {} фильмов для пользователя (Id: {})", count, userId);
+        return Arrays.stream(likeMatrix.recommendFilms(userId, count)).boxed().toList();
+    }
+
+    /**
+     * Сверяет рейтинг в памяти с результатом SQL-запроса и перезагружает его при расхождении.
+     * С шардами первые фильмы рейтинга собираются из первых фильмов каждого шарда.
+     * Лайки, поставленные во время сверки, могут дать ложное расхождение — тогда рейтинг
+     * просто будет перезагружен лишний раз.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.popular.reconcile-interval:PT5M}",
+            initialDelayString = "${filmorate.popular.reconcile-interval:PT5M}")
+    public void reconcileLeaderboard() {
+        flushLikes();
+        List<PopularityLeaderboard.Rank> expected = findPopularRanks(reconcileDepth);
+        List<PopularityLeaderboard.Rank> actual = leaderboard.findTopRanks(reconcileDepth);
+        if (!expected.equals(actual)) {
+            log.warn("Рейтинг популярных фильмов расходится с базой данных, выполняется перезагрузка");
+            loadLeaderboard();
+        }
+    }
+
+    /**
+     * Первые count фильмов рейтинга по базе данных. С шардами каждый шард отдаёт свои первые count
+     * фильмов — все лайки фильма лежат в одном шарде, поэтому общий рейтинг целиком входит в их
+     * объединение. Если фильмов с лайками меньше count, список добирается фильмами без лайков по id.
+     */
+    public List<PopularityLeaderboard.Rank> findPopularRanks(int count) {
+        if (shards == null) {
+            return jdbc.query(FIND_POPULAR_FILMS_QUERY, RANK_MAPPER, count);
+        }
+        List<PopularityLeaderboard.Rank> ranks = shards.queryAll(FIND_SHARD_POPULAR_FILMS_QUERY, RANK_MAPPER, count)
+                .stream()
+                .sorted(PopularityLeaderboard.ORDER)
+                .limit(count)
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (ranks.size() < count) {
+            Set<Long> liked = ranks.stream().map(PopularityLeaderboard.Rank::filmId).collect(Collectors.toSet());
+            jdbc.queryForList(FIRST_FILM_IDS_QUERY, Long.class, count + liked.size()).stream()
+                    .filter(filmId -> !liked.contains(filmId))
+                    .limit(count - ranks.size())
+                    .forEach(filmId -> ranks.add(new PopularityLeaderboard.Rank(filmId, 0)));
+        }
+        return ranks;
+    }
+
+    private void enqueue(Long userId, Long filmId, boolean liked) {
+        leaderboard.write(() -> {
+            leaderboard.adjust(filmId, writeBuffer.put(userId, filmId, liked));
+            return null;
+        });
+        if (liked) {
+            likeMatrix.addLike(userId, filmId);
+        } else {
+            likeMatrix.removeLike(userId, filmId);
+        }
+        versions.popularChanged();
+        if (writeBuffer.size() >= flushBatchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushLikesSafely();
+            });
+        }
+    }
+
+    private void flushLikesSafely() {
+        try {
+            flushLikes();
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать отложенные лайки", e);
+        }
     }
-}
 
+    private void write(String query, List<LikeWriteBuffer.Event> events, long deltaPerRow) {
+        if (events.isEmpty()) {
+            return;
+        }
+        int[] counts = shards == null ? writeBatch(query, events) : shards.batchUpdate(query, events);
+        boolean corrected = false;
+        for (int i = 0; i < events.size(); i++) {
+            LikeWriteBuffer.Event event = events.get(i);
+            long actual = counts[i] > 0 ? deltaPerRow : 0;
+            leaderboard.adjust(event.filmId(), actual - event.expectedDelta());
+            corrected |= actual != event.expectedDelta();
+        }
+        if (corrected) {
+            versions.popularChanged();
+        }
+    }
+
+    private int[] writeBatch(String query, List<LikeWriteBuffer.Event> events) {
+        List<Object[]> params = events.stream()
+                .map(event -> new Object[]{event.userId(), event.filmId()})
+                .toList();
+        try {
+            return transactionTemplate.execute(status -> jdbc.batchUpdate(query, params));
+        } catch (DataAccessException e) {
+            log.warn("Батч лайков не записан, повтор по одной строке: {}", e.getMessage());
+            int[] counts = new int[events.size()];
+            for (int i = 0; i < events.size(); i++) {
+                try {
+                    counts[i] = jdbc.update(query, params.get(i));
+                } catch (DataAccessException rowError) {
+                    log.warn("Лайк пользователя {} фильму {} не записан: {}", events.get(i).userId(),
+                            events.get(i).filmId(), rowError.getMessage());
+                }
+            }
+            return counts;
+        }
+    }
+
+    private void checkReferences(Long userId, Long filmId) {
+        jdbc.query(COUNT_REFERENCES_QUERY, rs -> {
+            if (rs.getInt("films") == 0) {
+                throw new NotFoundException("Фильм с id = " + filmId + " не найден");
+            }
+            if (rs.getInt("users") == 0) {
+                throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+            }
+        }, filmId, userId);
+    }
+
+    private RuntimeException translate(DataIntegrityViolationException e, Long userId, Long filmId) {
+        if (violates(e, FILM_FK)) {
+            return new NotFoundException("Фильм с id = " + filmId + " не найден");
+        }
+        if (violates(e, USER_FK)) {
+            return new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        return e;
+    }
+}
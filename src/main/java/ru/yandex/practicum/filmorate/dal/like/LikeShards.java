@@ -0,0 +1,308 @@
+package ru.yandex.practicum.filmorate.dal.like;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.metrics.InstrumentedDataSource;
+import ru.yandex.practicum.filmorate.dal.metrics.QueryMetrics;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Таблица лайков, разложенная по filmorate.likes.shards.count отдельным базам H2. Шард выбирается
+ * по film_id функцией jump consistent hash: все лайки фильма лежат в одном шарде, а при добавлении
+ * шарда переезжает только его доля фильмов. Внешних ключей между базами нет, поэтому существование
+ * фильма и пользователя проверяет {@link LikeRepository} по основной базе. Лайки, оставшиеся
+ * в таблице likes основной базы с тех пор, когда шардов не было, переносятся в шарды при запуске.
+ * Число шардов, по которому разложены лайки, хранится в нулевом шарде: при запуске с другим
+ * числом шардов лайки перераспределяются, и сохранённое значение обновляется.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${filmorate.likes.shards.count:0} > 0")
+public class LikeShards {
+    private static final String CREATE_TABLE_QUERY = """
+            CREATE TABLE IF NOT EXISTS likes (
+                user_id BIGINT NOT NULL,
+                film_id BIGINT NOT NULL,
+                PRIMARY KEY (film_id, user_id))""";
+    private static final String CREATE_LAYOUT_TABLE_QUERY = """
+            CREATE TABLE IF NOT EXISTS likes_layout (
+                id INT PRIMARY KEY,
+                shard_count INT NOT NULL)""";
+    private static final String FIND_LAYOUT_QUERY = "SELECT shard_count FROM likes_layout WHERE id = 1";
+    private static final String SAVE_LAYOUT_QUERY = "MERGE INTO likes_layout (id, shard_count) KEY (id) VALUES (1, ?)";
+    private static final String HAS_LIKES_QUERY = "SELECT 1 FROM likes LIMIT 1";
+    private static final String FIND_FILM_IDS_QUERY = "SELECT DISTINCT film_id FROM likes";
+    private static final String FIND_USERS_BY_FILM_QUERY = "SELECT user_id FROM likes WHERE film_id = ?";
+    private static final String DELETE_BY_FILM_QUERY = "DELETE FROM likes WHERE film_id = ?";
+    private static final String COPY_QUERY = """
+            MERGE INTO likes l USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS v(user_id, film_id)
+            ON l.user_id = v.user_id AND l.film_id = v.film_id
+            WHEN NOT MATCHED THEN INSERT (user_id, film_id) VALUES (v.user_id, v.film_id)""";
+
+    private final JdbcTemplate primary;
+    private final String urlTemplate;
+    private final int poolSize;
+    private final QueryMetrics metrics;
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+
+    public LikeShards(JdbcTemplate primary,
+                      @Value("${filmorate.likes.shards.count}") int count,
+                      @Value("${filmorate.likes.shards.url:jdbc:h2:file:./db/filmorate-likes-%d}") String urlTemplate,
+                      @Value("${filmorate.likes.shards.pool-size:10}") int poolSize,
+                      @Value("${filmorate.metrics.jdbc.enabled:true}") boolean instrumented,
+                      ObjectProvider<QueryMetrics> metrics) {
+        this.primary = primary;
+        this.urlTemplate = urlTemplate;
+        this.poolSize = poolSize;
+        this.metrics = instrumented ? metrics.getIfAvailable() : null;
+        for (int i = 0; i < count; i++) {
+            shards.add(open(i));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        shards.forEach(shard -> shard.jdbc().execute(CREATE_TABLE_QUERY));
+        log.info("Лайки разложены по {} шардам: {}", shards.size(), urlTemplate);
+        JdbcTemplate layout = shards.getFirst().jdbc();
+        layout.execute(CREATE_LAYOUT_TABLE_QUERY);
+        // Без сохранённого значения (шарды только включены или созданы до появления таблицы)
+        // считается, что лайки уже разложены по текущему числу шардов
+        List<Integer> stored = layout.queryForList(FIND_LAYOUT_QUERY, Integer.class);
+        if (stored.isEmpty() || stored.getFirst() != shards.size()) {
+            if (!stored.isEmpty()) {
+                rebalance(stored.getFirst());
+            }
+            layout.update(SAVE_LAYOUT_QUERY, shards.size());
+        }
+        importFromPrimary();
+    }
+
+    @PreDestroy
+    public void close() {
+        fanOut.close();
+        shards.forEach(shard -> shard.pool().close());
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    /**
+     * Jump consistent hash (Lamping, Veach): номер шарда от 0 до count - 1. При переходе
+     * с N на N + 1 шардов меняется шард только у 1 / (N + 1) ключей, и все они уходят в новый шард.
+     */
+    public static int shardOf(long filmId, int count) {
+        long key = filmId;
+        long bucket = -1;
+        long next = 0;
+        while (next < count) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    public JdbcTemplate shardFor(long filmId) {
+        return shards.get(shardOf(filmId, shards.size())).jdbc();
+    }
+
+    public int update(String query, long userId, long filmId) {
+        return shardFor(filmId).update(query, userId, filmId);
+    }
+
+    /**
+     * Пишет события батчами, по одному на шард; шарды пишутся параллельно. Батч шарда идёт
+     * в одной транзакции, если он не прошёл — строки повторяются по одной, ошибочные пропускаются.
+     * Возвращает число изменённых строк для каждого события в исходном порядке.
+     */
+    public int[] batchUpdate(String query, List<LikeWriteBuffer.Event> events) {
+        int[] counts = new int[events.size()];
+        List<List<Integer>> indexesByShard = new ArrayList<>();
+        shards.forEach(shard -> indexesByShard.add(new ArrayList<>()));
+        for (int i = 0; i < events.size(); i++) {
+            indexesByShard.get(shardOf(events.get(i).filmId(), shards.size())).add(i);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int s = 0; s < shards.size(); s++) {
+            Shard shard = shards.get(s);
+            List<Integer> indexes = indexesByShard.get(s);
+            if (!indexes.isEmpty()) {
+                tasks.add(() -> {
+                    writeBatch(shard, query, events, indexes, counts);
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+        return counts;
+    }
+
+    /**
+     * Выполняет запрос на всех шардах параллельно и склеивает результаты в порядке шардов.
+     */
+    public <T> List<T> queryAll(String query, RowMapper<T> mapper, Object... params) {
+        List<Callable<List<T>>> tasks = shards.stream()
+                .map(shard -> (Callable<List<T>>) () -> shard.jdbc().query(query, mapper, params))
+                .toList();
+        List<T> result = new ArrayList<>();
+        invokeAll(tasks).forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Выполняет запрос на шардах по очереди: обработчик строк вызывается из одного потока.
+     */
+    public void forEach(String query, RowCallbackHandler handler) {
+        shards.forEach(shard -> shard.jdbc().query(query, handler));
+    }
+
+    /**
+     * Переносит лайки, которые лежат не в своём шарде, после смены числа шардов с previousCount.
+     * Вызывается при запуске, если сохранённое число шардов отличается от заданного.
+     * Лишние старые шарды открываются только на время переноса. Фильм переносится целиком: сначала
+     * лайки копируются в новый шард, затем удаляются из старого, поэтому прерванный перенос
+     * можно безопасно запустить ещё раз. Возвращает число перенесённых лайков.
+     */
+    public long rebalance(int previousCount) {
+        List<Shard> retired = new ArrayList<>();
+        for (int i = shards.size(); i < previousCount; i++) {
+            Shard shard = open(i);
+            shard.jdbc().execute(CREATE_TABLE_QUERY);
+            retired.add(shard);
+        }
+        long moved = 0;
+        try {
+            List<Shard> sources = new ArrayList<>(shards);
+            sources.addAll(retired);
+            for (int i = 0; i < sources.size(); i++) {
+                moved += moveMisplaced(sources.get(i), i);
+            }
+        } finally {
+            retired.forEach(shard -> shard.pool().close());
+        }
+        log.info("Лайки перераспределены с {} на {} шардов: перенесено {} лайков", previousCount,
+                shards.size(), moved);
+        return moved;
+    }
+
+    /**
+     * Переносит в шарды лайки из таблицы likes основной базы, например после перехода с 0 шардов.
+     * Как и при перераспределении, фильм сначала копируется в свой шард, затем удаляется
+     * из основной базы. Возвращает число перенесённых лайков.
+     */
+    public long importFromPrimary() {
+        if (primary.queryForList(HAS_LIKES_QUERY, Integer.class).isEmpty()) {
+            return 0;
+        }
+        long moved = 0;
+        for (Long filmId : primary.queryForList(FIND_FILM_IDS_QUERY, Long.class)) {
+            moved += moveFilm(primary, filmId, shards.get(shardOf(filmId, shards.size())));
+        }
+        if (moved > 0) {
+            log.info("Лайки из основной базы перенесены в {} шардов: {} лайков", shards.size(), moved);
+        }
+        return moved;
+    }
+
+    private long moveMisplaced(Shard source, int index) {
+        long moved = 0;
+        for (Long filmId : source.jdbc().queryForList(FIND_FILM_IDS_QUERY, Long.class)) {
+            int target = shardOf(filmId, shards.size());
+            if (target != index) {
+                moved += moveFilm(source.jdbc(), filmId, shards.get(target));
+            }
+        }
+        return moved;
+    }
+
+    private long moveFilm(JdbcTemplate source, long filmId, Shard destination) {
+        List<Object[]> likes = source.queryForList(FIND_USERS_BY_FILM_QUERY, Long.class, filmId).stream()
+                .map(userId -> new Object[]{userId, filmId})
+                .toList();
+        destination.transactions().executeWithoutResult(status -> destination.jdbc().batchUpdate(COPY_QUERY, likes));
+        source.update(DELETE_BY_FILM_QUERY, filmId);
+        return likes.size();
+    }
+
+    private void writeBatch(Shard shard, String query, List<LikeWriteBuffer.Event> events, List<Integer> indexes,
+                            int[] counts) {
+        List<Object[]> params = indexes.stream()
+                .map(i -> new Object[]{events.get(i).userId(), events.get(i).filmId()})
+                .toList();
+        try {
+            int[] batch = shard.transactions().execute(status -> shard.jdbc().batchUpdate(query, params));
+            for (int i = 0; i < indexes.size(); i++) {
+                counts[indexes.get(i)] = batch[i];
+            }
+        } catch (DataAccessException e) {
+            log.warn("Батч лайков шарда не записан, повтор по одной строке: {}", e.getMessage());
+            for (int i = 0; i < indexes.size(); i++) {
+                try {
+                    counts[indexes.get(i)] = shard.jdbc().update(query, params.get(i));
+                } catch (DataAccessException rowError) {
+                    log.warn("Лайк пользователя {} фильму {} не записан: {}", params.get(i)[0], params.get(i)[1],
+                            rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : fanOut.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Запрос к шардам лайков прерван");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new InternalServerException("Ошибка запроса к шардам лайков: " + e.getCause().getMessage());
+        }
+        return results;
+    }
+
+    private Shard open(int index) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("filmorate-likes-" + index);
+        config.setJdbcUrl(urlTemplate.formatted(index));
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(poolSize);
+        HikariDataSource pool = new HikariDataSource(config);
+        DataSource dataSource = metrics != null ? new InstrumentedDataSource(pool, metrics) : pool;
+        return new Shard(pool, new JdbcTemplate(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    }
+
+    private record Shard(HikariDataSource pool, JdbcTemplate jdbc, TransactionTemplate transactions) {
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.dal.like;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Лайки, ожидающие записи в базу данных. По каждой паре пользователь–фильм хранится только итоговое
+ * состояние: повторный лайк ничего не меняет, лайк и последующее снятие лайка схлопываются в одну запись.
+ * Для каждой пары запоминается ожидаемое изменение числа лайков фильма, чтобы рейтинг учитывал
+ * ещё не записанные события, а после записи его можно было поправить по фактическому результату.
+ */
+class LikeWriteBuffer {
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Добавляет событие и возвращает, на сколько оно меняет ожидаемое число лайков фильма.
+     * Первое событие по паре считается действующим: лайк — что лайка не было, снятие — что он был.
+     */
+    long put(long userId, long filmId, boolean liked) {
+        long[] delta = new long[1];
+        pending.compute(new Key(userId, filmId), (key, old) -> {
+            Pending updated = new Pending(old == null ? !liked : old.likedBefore(), liked);
+            delta[0] = updated.expectedDelta() - (old == null ? 0 : old.expectedDelta());
+            return updated;
+        });
+        return delta[0];
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    /**
+     * Забирает все накопленные события. События, пришедшие во время выборки, попадут
+     * либо в эту выборку, либо в следующую.
+     */
+    List<Event> drain() {
+        List<Event> events = new ArrayList<>(pending.size());
+        for (Key key : pending.keySet()) {
+            Pending removed = pending.remove(key);
+            if (removed != null) {
+                events.add(new Event(key.userId(), key.filmId(), removed.liked(), removed.expectedDelta()));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Прибавляет к числу лайков по фильмам ожидаемые изменения от ещё не записанных событий.
+     */
+    void addExpectedDeltas(Map<Long, Long> likesByFilm) {
+        pending.forEach((key, value) -> likesByFilm.merge(key.filmId(), value.expectedDelta(), Long::sum));
+    }
+
+    record Event(long userId, long filmId, boolean liked, long expectedDelta) {
+    }
+
+    private record Key(long userId, long filmId) {
+    }
+
+    private record Pending(boolean likedBefore, boolean liked) {
+        long expectedDelta() {
+            return (liked ? 1 : 0) - (likedBefore ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.dal.like;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который поддерживается в памяти.
+ * Порядок совпадает с запросом популярных фильмов: лайки по убыванию, затем id по возрастанию.
+ */
+public class PopularityLeaderboard {
+    static final Comparator<Rank> ORDER = Comparator.comparingLong(Rank::likes).reversed()
+            .thenComparingLong(Rank::filmId);
+
+    private final ReadWriteLock writers = new ReentrantReadWriteLock();
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Board board = new Board();
+    private volatile Set<Long> addedFilms;
+
+    /**
+     * Перезагружает рейтинг. Пока source читает базу, записи лайков через write не идут: иначе лайк,
+     * записанный до чтения, попал бы и в прочитанные данные, и в изменения рейтинга, и был бы посчитан
+     * дважды. Новый рейтинг собирается отдельно и публикуется одной заменой ссылки, поэтому читатели
+     * видят либо старый, либо новый рейтинг целиком. Фильмы, добавленные во время загрузки,
+     * переносятся в новый рейтинг.
+     */
+    public synchronized void load(Supplier<Map<Long, Long>> source) {
+        Set<Long> added = ConcurrentHashMap.newKeySet();
+        writers.writeLock().lock();
+        try {
+            addedFilms = added;
+            Board loaded = new Board();
+            source.get().forEach(loaded::change);
+            swapLock.writeLock().lock();
+            try {
+                added.forEach(filmId -> loaded.change(filmId, 0));
+                board = loaded;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        } finally {
+            addedFilms = null;
+            writers.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет запись лайков в базу вместе с изменением рейтинга по её результату.
+     * Записи идут параллельно друг другу, перезагрузка рейтинга ждёт начатые записи.
+     */
+    public <T> T write(Supplier<T> write) {
+        writers.readLock().lock();
+        try {
+            return write.get();
+        } finally {
+            writers.readLock().unlock();
+        }
+    }
+
+    public void addFilm(long filmId) {
+        swapLock.readLock().lock();
+        try {
+            board.change(filmId, 0);
+            Set<Long> added = addedFilms;
+            if (added != null) {
+                added.add(filmId);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public void increment(long filmId) {
+        change(filmId, 1);
+    }
+
+    public void decrement(long filmId) {
+        change(filmId, -1);
+    }
+
+    public void adjust(long filmId, long delta) {
+        if (delta != 0) {
+            change(filmId, delta);
+        }
+    }
+
+    /**
+     * Возвращает id первых count фильмов рейтинга. Новая позиция фильма добавляется раньше,
+     * чем удаляется старая, поэтому при параллельном обновлении фильм может встретиться дважды,
+     * но не пропадает из выдачи.
+     */
+    public List<Long> findTop(int count) {
+        Board current = board;
+        List<Long> filmIds = new ArrayList<>(Math.min(count, current.ranksByFilm.size()));
+        Set<Long> seen = new HashSet<>();
+        for (Rank rank : current.ranking) {
+            if (filmIds.size() >= count) {
+                break;
+            }
+            if (seen.add(rank.filmId())) {
+                filmIds.add(rank.filmId());
+            }
+        }
+        return filmIds;
+    }
+
+    public List<Rank> findTopRanks(int count) {
+        return board.ranking.stream()
+                .limit(count)
+                .toList();
+    }
+
+    private void change(long filmId, long delta) {
+        swapLock.readLock().lock();
+        try {
+            board.change(filmId, delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static final class Board {
+        private final Map<Long, Rank> ranksByFilm = new ConcurrentHashMap<>();
+        private final Set<Rank> ranking = new ConcurrentSkipListSet<>(ORDER);
+
+        void change(long filmId, long delta) {
+            ranksByFilm.compute(filmId, (id, old) -> {
+                Rank updated = new Rank(id, old == null ? delta : old.likes() + delta);
+                ranking.add(updated);
+                if (old != null && !old.equals(updated)) {
+                    ranking.remove(old);
+                }
+                return updated;
+            });
+        }
+    }
+
+    public record Rank(long filmId, long likes) {
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.dal.limit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Оборачивает пул соединений в {@link ConcurrencyLimitedDataSource}, если задано
+ * filmorate.jdbc.max-concurrency больше нуля. Выполняется раньше остальных обёрток, поэтому
+ * ожидание разрешения попадает во время ожидания соединения в метриках запросов.
+ */
+@Component
+@ConditionalOnExpression("${filmorate.jdbc.max-concurrency:0} > 0")
+public class ConcurrencyLimitedDataSourcePostProcessor implements BeanPostProcessor, Ordered {
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+
+    public ConcurrencyLimitedDataSourcePostProcessor(
+            @Value("${filmorate.jdbc.max-concurrency}") int maxConcurrency,
+            @Value("${filmorate.jdbc.acquire-timeout:PT5S}") Duration acquireTimeout) {
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+            return new ConcurrencyLimitedDataSource(dataSource, maxConcurrency, acquireTimeout);
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Обёртка над пулом соединений, которая замеряет время ожидания соединения и каждое выполнение
+ * SQL-запроса. Время запроса на чтение — это выполнение плюс чтение строк из ResultSet,
+ * без времени, которое код репозитория тратит на обработку строк.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+    private final QueryMetrics metrics;
+
+    public InstrumentedDataSource(DataSource target, QueryMetrics metrics) {
+        super(target);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        metrics.recordConnectionWait(System.nanoTime() - start);
+        return wrap(Connection.class, connection, new ConnectionHandler(connection));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        metrics.recordConnectionWait(System.nanoTime() - start);
+        return wrap(Connection.class, connection, new ConnectionHandler(connection));
+    }
+
+    private static <T> T wrap(Class<T> type, Object target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            Object result = InstrumentedDataSource.invoke(connection, method, args);
+            if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return wrap(method.getReturnType(), statement, new StatementHandler(statement, sql));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+        private Execution pending;
+
+        StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (name.equals("close")) {
+                    finishPending();
+                }
+                return InstrumentedDataSource.invoke(statement, method, args);
+            }
+
+            finishPending();
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+            if (sql == null) {
+                return InstrumentedDataSource.invoke(statement, method, args);
+            }
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = InstrumentedDataSource.invoke(statement, method, args);
+            } catch (Throwable e) {
+                metrics.recordError(sql, System.nanoTime() - start);
+                QueryCounter.record(1);
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            QueryCounter.record(statementCount(result));
+            if (result instanceof ResultSet resultSet) {
+                pending = new Execution(sql, elapsed);
+                return wrap(ResultSet.class, resultSet, new ResultSetHandler(resultSet, pending));
+            }
+            metrics.recordStatement(sql, elapsed, affectedRows(result));
+            return result;
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish();
+                pending = null;
+            }
+        }
+
+        private int statementCount(Object result) {
+            if (result instanceof int[] counts) {
+                return counts.length;
+            }
+            if (result instanceof long[] counts) {
+                return counts.length;
+            }
+            return 1;
+        }
+
+        private long affectedRows(Object result) {
+            if (result instanceof Integer count) {
+                return Math.max(count, 0);
+            }
+            if (result instanceof Long count) {
+                return Math.max(count, 0);
+            }
+            if (result instanceof int[] counts) {
+                return Arrays.stream(counts).filter(count -> count > 0).sum();
+            }
+            if (result instanceof long[] counts) {
+                return Arrays.stream(counts).filter(count -> count > 0).sum();
+            }
+            return 0;
+        }
+    }
+
+    private final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Execution execution;
+
+        ResultSetHandler(ResultSet resultSet, Execution execution) {
+            this.resultSet = resultSet;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("next")) {
+                long start = System.nanoTime();
+                Object hasRow = InstrumentedDataSource.invoke(resultSet, method, args);
+                execution.nanos += System.nanoTime() - start;
+                if (Boolean.TRUE.equals(hasRow)) {
+                    execution.rows++;
+                }
+                return hasRow;
+            }
+            if (method.getName().equals("close")) {
+                execution.finish();
+            }
+            return InstrumentedDataSource.invoke(resultSet, method, args);
+        }
+    }
+
+    /**
+     * Выполнение запроса на чтение: записывается в статистику при закрытии ResultSet или Statement.
+     */
+    private final class Execution {
+        private final String sql;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        Execution(String sql, long nanos) {
+            this.sql = sql;
+            this.nanos = nanos;
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                metrics.recordStatement(sql, nanos, rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Оборачивает пул соединений в {@link InstrumentedDataSource}. Отключается свойством
+ * filmorate.metrics.jdbc.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.jdbc.enabled", matchIfMissing = true)
+public class InstrumentedDataSourcePostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<QueryMetrics> metrics;
+
+    public InstrumentedDataSourcePostProcessor(ObjectProvider<QueryMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+            return new InstrumentedDataSource(dataSource, metrics.getObject());
+        }
+        return bean;
+    }
+}
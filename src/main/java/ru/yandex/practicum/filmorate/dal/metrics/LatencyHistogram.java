@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с корзинами по степеням двойки в микросекундах: корзина i содержит значения
+ * от 2^(i-1) до 2^i мкс. Процентили считаются по верхней границе корзины, то есть с точностью до 2 раз.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1_000, 0);
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalMicros() {
+        return totalNanos.sum() / 1_000;
+    }
+
+    public long maxMicros() {
+        return maxNanos.get() / 1_000;
+    }
+
+    public long meanMicros() {
+        long calls = count();
+        return calls == 0 ? 0 : totalMicros() / calls;
+    }
+
+    public long percentileMicros(double percentile) {
+        long calls = count();
+        if (calls == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(calls * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(1L << i, maxMicros());
+            }
+        }
+        return maxMicros();
+    }
+}
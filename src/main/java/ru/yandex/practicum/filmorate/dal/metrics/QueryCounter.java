@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счётчик SQL-запросов текущей операции, например одного HTTP-запроса. Считает его
+ * {@link InstrumentedDataSource}: обращение к базе — это один вызов execute*, JDBC-батч
+ * даёт одно обращение и столько запросов, сколько в нём строк.
+ * <p>
+ * Счётчик привязан к потоку. Задачи, которые операция отдаёт в свой пул, учитываются,
+ * если пул обёрнут в {@link #propagating(Executor)}. Счётчики вкладываются: запрос учитывается
+ * во всех открытых счётчиках потока, поэтому тест видит запросы, даже если фильтр открыл свой.
+ * Считает только обёрнутый DataSource, то есть при filmorate.metrics.jdbc.enabled=true.
+ */
+public final class QueryCounter {
+    private static final ThreadLocal<Frame> CURRENT = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    /**
+     * Добавляет counter к счётчикам потока до закрытия Scope.
+     */
+    public static Scope open(Counter counter) {
+        Frame previous = CURRENT.get();
+        CURRENT.set(new Frame(counter, previous));
+        return () -> restore(previous);
+    }
+
+    /**
+     * Выполняет действие и возвращает число запросов, которые оно сделало, в том числе из пулов
+     * с {@link #propagating(Executor)}. Предназначен для тестов с бюджетом запросов на эндпоинт.
+     */
+    public static Counter measure(ThrowingRunnable action) throws Exception {
+        Counter counter = new Counter();
+        try (Scope ignored = open(counter)) {
+            action.run();
+        }
+        return counter;
+    }
+
+    /**
+     * Пул, задачи которого учитываются в счётчике потока, отправившего задачу.
+     */
+    public static Executor propagating(Executor executor) {
+        return task -> {
+            Frame frame = CURRENT.get();
+            if (frame == null) {
+                executor.execute(task);
+                return;
+            }
+            executor.execute(() -> {
+                Frame previous = CURRENT.get();
+                CURRENT.set(frame);
+                try {
+                    task.run();
+                } finally {
+                    restore(previous);
+                }
+            });
+        };
+    }
+
+    static void record(int statements) {
+        for (Frame frame = CURRENT.get(); frame != null; frame = frame.outer()) {
+            frame.counter().roundTrips.incrementAndGet();
+            frame.counter().statements.addAndGet(statements);
+        }
+    }
+
+    private static void restore(Frame previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static final class Counter {
+        private final AtomicInteger roundTrips = new AtomicInteger();
+        private final AtomicInteger statements = new AtomicInteger();
+
+        public int getRoundTrips() {
+            return roundTrips.get();
+        }
+
+        public int getStatements() {
+            return statements.get();
+        }
+
+        @Override
+        public String toString() {
+            return roundTrips.get() + " обращений к базе, " + statements.get() + " запросов";
+        }
+    }
+
+    private record Frame(Counter counter, Frame outer) {
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
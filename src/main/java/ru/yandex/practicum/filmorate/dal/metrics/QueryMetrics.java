@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import ru.yandex.practicum.filmorate.dal.BaseRepository;
+import ru.yandex.practicum.filmorate.model.QueryMetricsReport;
+import ru.yandex.practicum.filmorate.model.QueryStats;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Статистика выполнения SQL-запросов, которую собирает {@link InstrumentedDataSource}.
+ * Запросы группируются по тексту, в котором списки параметров IN (?, ?, ...) свёрнуты в один «?».
+ * В отчёте текст запроса заменяется именем константы репозитория, например FilmRepository.FIND_BY_ID_QUERY.
+ */
+@Slf4j
+@Component
+public class QueryMetrics {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    private final ApplicationContext context;
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private volatile Map<String, String> queryNames;
+
+    public QueryMetrics(ApplicationContext context) {
+        this.context = context;
+    }
+
+    void recordStatement(String sql, long nanos, long rows) {
+        statements.computeIfAbsent(normalize(sql), key -> new StatementStats()).record(nanos, rows);
+    }
+
+    void recordError(String sql, long nanos) {
+        statements.computeIfAbsent(normalize(sql), key -> new StatementStats()).recordError(nanos);
+    }
+
+    void recordConnectionWait(long nanos) {
+        connectionWait.record(nanos);
+    }
+
+    /**
+     * Отчёт по всем запросам, отсортированный по суммарному времени выполнения.
+     */
+    public QueryMetricsReport report() {
+        Map<String, String> names = queryNames();
+        List<QueryStats> stats = statements.entrySet().stream()
+                .map(entry -> toStats(names.getOrDefault(entry.getKey(), entry.getKey()), entry.getKey(),
+                        entry.getValue().latency(), entry.getValue().rows(), entry.getValue().errors()))
+                .sorted(Comparator.comparingLong(QueryStats::getTotalMicros).reversed())
+                .toList();
+        return new QueryMetricsReport(toStats("connection-wait", null, connectionWait, 0, 0), stats);
+    }
+
+    private static QueryStats toStats(String name, String sql, LatencyHistogram latency, long rows, long errors) {
+        return new QueryStats(name, sql, latency.count(), rows, errors, latency.totalMicros(),
+                latency.meanMicros(), latency.percentileMicros(50), latency.percentileMicros(95),
+                latency.percentileMicros(99), latency.maxMicros());
+    }
+
+    static String normalize(String sql) {
+        String collapsed = WHITESPACE.matcher(sql.replace("%s", "?")).replaceAll(" ").trim();
+        return PARAMETER_LIST.matcher(collapsed).replaceAll("?");
+    }
+
+    /**
+     * Имена строковых констант всех репозиториев. Собираются при первом отчёте, когда контекст уже поднят.
+     */
+    private Map<String, String> queryNames() {
+        Map<String, String> names = queryNames;
+        if (names == null) {
+            names = new HashMap<>();
+            for (BaseRepository<?> repository : context.getBeansOfType(BaseRepository.class).values()) {
+                Class<?> type = ClassUtils.getUserClass(repository);
+                for (Field field : type.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                        try {
+                            field.setAccessible(true);
+                            names.putIfAbsent(normalize((String) field.get(null)),
+                                    type.getSimpleName() + "." + field.getName());
+                        } catch (ReflectiveOperationException | RuntimeException e) {
+                            log.debug("Не удалось прочитать константу {}: {}", field, e.getMessage());
+                        }
+                    }
+                }
+            }
+            queryNames = names;
+        }
+        return names;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопленная статистика одного SQL-запроса.
+ */
+public class StatementStats {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    void record(long nanos, long rowCount) {
+        latency.record(nanos);
+        rows.add(rowCount);
+    }
+
+    void recordError(long nanos) {
+        latency.record(nanos);
+        errors.increment();
+    }
+
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    public long rows() {
+        return rows.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+}
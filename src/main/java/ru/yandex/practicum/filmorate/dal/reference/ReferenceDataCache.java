@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.dal.reference;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.interfaceStorage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.interfaceStorage.MpaStorage;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Справочники жанров и рейтингов MPA, загруженные в память при старте.
+ * Объекты лежат в массивах по индексу id, поэтому поиск не обращается к базе данных.
+ * Справочники заполняются миграцией V2 и почти не меняются; после правки таблиц нужно вызвать {@link #refresh()}.
+ * Модели жанра и рейтинга изменяемые, поэтому загруженные объекты наружу не отдаются:
+ * каждый вызов возвращает копию, и изменение фильма не затрагивает справочник.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+
+    private volatile Snapshot snapshot = new Snapshot(new Genre[0], List.of(), new Mpa[0], List.of());
+
+    @PostConstruct
+    public void refresh() {
+        List<Genre> genres = genreStorage.findAll().stream()
+                .sorted(Comparator.comparing(Genre::getId))
+                .toList();
+        List<Mpa> ratings = mpaStorage.findAll().stream()
+                .sorted(Comparator.comparing(Mpa::getId))
+                .toList();
+
+        Genre[] genresById = new Genre[genres.isEmpty() ? 0 : genres.getLast().getId().intValue() + 1];
+        genres.forEach(genre -> genresById[genre.getId().intValue()] = genre);
+        Mpa[] ratingsById = new Mpa[ratings.isEmpty() ? 0 : ratings.getLast().getId().intValue() + 1];
+        ratings.forEach(mpa -> ratingsById[mpa.getId().intValue()] = mpa);
+
+        snapshot = new Snapshot(genresById, genres, ratingsById, ratings);
+        log.info("Справочники загружены: {} жанров, {} рейтингов", genres.size(), ratings.size());
+    }
+
+    public Collection<Genre> findAllGenres() {
+        return snapshot.genres().stream()
+                .map(ReferenceDataCache::copy)
+                .toList();
+    }
+
+    public Optional<Genre> findGenre(Long id) {
+        Genre[] genresById = snapshot.genresById();
+        if (id == null || id < 0 || id >= genresById.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(genresById[id.intValue()]).map(ReferenceDataCache::copy);
+    }
+
+    public Collection<Mpa> findAllRatings() {
+        return snapshot.ratings().stream()
+                .map(ReferenceDataCache::copy)
+                .toList();
+    }
+
+    public Optional<Mpa> findRating(Long id) {
+        Mpa[] ratingsById = snapshot.ratingsById();
+        if (id == null || id < 0 || id >= ratingsById.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(ratingsById[id.intValue()]).map(ReferenceDataCache::copy);
+    }
+
+    private static Genre copy(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        return copy;
+    }
+
+    private static Mpa copy(Mpa mpa) {
+        Mpa copy = new Mpa();
+        copy.setId(mpa.getId());
+        copy.setName(mpa.getName());
+        return copy;
+    }
+
+    private record Snapshot(Genre[] genresById, List<Genre> genres, Mpa[] ratingsById, List<Mpa> ratings) {
+    }
+}
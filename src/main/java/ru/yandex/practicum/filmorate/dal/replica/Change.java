@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Изменение, выполненное на основной базе: SQL-запрос и вызовы set* с его параметрами.
+ * Для запроса без параметров, выполненного через Statement, parameters равен null.
+ * failed — запрос завершился на основной базе ошибкой; его всё равно повторяют на реплике
+ * и откатывают, потому что он мог израсходовать значения счётчиков id.
+ */
+record Change(String sql, List<Parameter> parameters, boolean failed) {
+
+    Change(String sql, List<Parameter> parameters) {
+        this(sql, parameters, false);
+    }
+
+    Change asFailed() {
+        return new Change(sql, parameters, true);
+    }
+
+    void apply(Connection connection) throws SQLException {
+        if (parameters == null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Parameter parameter : parameters) {
+                parameter.apply(statement);
+            }
+            statement.execute();
+        }
+    }
+
+    record Parameter(Method setter, Object[] args) {
+
+        void apply(PreparedStatement statement) throws SQLException {
+            try {
+                setter.invoke(statement, args);
+            } catch (IllegalAccessException e) {
+                throw new SQLException(e);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException sqlException) {
+                    throw sqlException;
+                }
+                throw new SQLException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальная реплика: отдельная база H2 в памяти, которая получает изменения основной базы
+ * в порядке их фиксации и применяет их в одном потоке, каждую транзакцию основной базы —
+ * одной транзакцией. Откаченные транзакции и запросы с ошибкой тоже выполняются и откатываются:
+ * так счётчики id на реплике сдвигаются так же, как на основной базе.
+ * Задержка lag имитирует отставание настоящей реплики.
+ */
+@Slf4j
+public class Replica implements AutoCloseable {
+    private final String name;
+    private final HikariDataSource pool;
+    private final Connection applyConnection;
+    private final ScheduledExecutorService applier;
+    private final long lagNanos;
+    private final AtomicLong reads = new AtomicLong();
+    private volatile long appliedPosition;
+    private volatile boolean failed;
+
+    public Replica(String name, int poolSize, Duration lag) throws SQLException {
+        String url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+        this.name = name;
+        this.lagNanos = lag.toNanos();
+        this.applyConnection = DriverManager.getConnection(url, "sa", "");
+        this.applyConnection.setAutoCommit(false);
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(poolSize);
+        this.pool = new HikariDataSource(config);
+        this.applier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-applier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Копирует в реплику текущее состояние основной базы, включая счётчики id.
+     */
+    void copyFrom(Connection primary) throws SQLException {
+        int statements = 0;
+        try (Statement script = primary.createStatement();
+             ResultSet rs = script.executeQuery("SCRIPT");
+             Statement target = applyConnection.createStatement()) {
+            while (rs.next()) {
+                target.execute(rs.getString(1));
+                statements++;
+            }
+        }
+        applyConnection.commit();
+        log.info("Реплика {} скопирована с основной базы: {} команд", name, statements);
+    }
+
+    void enqueue(long position, List<Change> changes, boolean committed) {
+        applier.schedule(() -> apply(position, changes, committed), lagNanos, TimeUnit.NANOSECONDS);
+    }
+
+    boolean hasApplied(long position) {
+        return !failed && appliedPosition >= position;
+    }
+
+    Connection getConnection() throws SQLException {
+        reads.incrementAndGet();
+        return pool.getConnection();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAppliedPosition() {
+        return appliedPosition;
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        applier.shutdownNow();
+        pool.close();
+        try (Statement statement = applyConnection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } finally {
+            applyConnection.close();
+        }
+    }
+
+    /**
+     * Ошибка применения означает, что реплика разошлась с основной базой: она исключается
+     * из чтения до перезапуска приложения.
+     */
+    private void apply(long position, List<Change> changes, boolean committed) {
+        if (failed) {
+            return;
+        }
+        try {
+            for (Change change : changes) {
+                if (committed && !change.failed()) {
+                    change.apply(applyConnection);
+                } else {
+                    applyDiscarded(change);
+                }
+            }
+            if (committed) {
+                applyConnection.commit();
+            } else {
+                applyConnection.rollback();
+            }
+            appliedPosition = position;
+        } catch (SQLException | RuntimeException e) {
+            failed = true;
+            log.error("Реплика {} не применила изменение {} и исключена из чтения", name, position, e);
+            try {
+                applyConnection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+        }
+    }
+
+    private void applyDiscarded(Change change) throws SQLException {
+        Savepoint savepoint = applyConnection.setSavepoint();
+        try {
+            change.apply(applyConnection);
+        } catch (SQLException expected) {
+            log.trace("Запрос с ошибкой на основной базе повторён на реплике {}: {}", name, expected.getMessage());
+        } finally {
+            applyConnection.rollback(savepoint);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Подключает filmorate.jdbc.replicas локальных реплик, если их больше нуля: основная база
+ * оборачивается в {@link ReplicatingDataSource}, а общий DataSource — в {@link ReplicaRoutingDataSource}.
+ * Выполняется после ограничителя параллельности, так что он действует только на основную базу,
+ * и до метрик, которые учитывают запросы и к основной базе, и к репликам.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${filmorate.jdbc.replicas:0} > 0")
+public class ReplicaDataSourcePostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final int replicaCount;
+    private final int poolSize;
+    private final Duration lag;
+    private final List<Replica> replicas = new ArrayList<>();
+
+    public ReplicaDataSourcePostProcessor(
+            @Value("${filmorate.jdbc.replicas}") int replicaCount,
+            @Value("${filmorate.jdbc.replica.pool-size:10}") int poolSize,
+            @Value("${filmorate.jdbc.replica.lag:PT0S}") Duration lag) {
+        this.replicaCount = replicaCount;
+        this.poolSize = poolSize;
+        this.lag = lag;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof ReplicaRoutingDataSource) {
+            return bean;
+        }
+        String prefix = "filmorate-replica-" + INSTANCES.incrementAndGet() + "-";
+        try (Connection primary = dataSource.getConnection()) {
+            for (int i = 1; i <= replicaCount; i++) {
+                Replica replica = new Replica(prefix + i, poolSize, lag);
+                replicas.add(replica);
+                replica.copyFrom(primary);
+            }
+        } catch (SQLException e) {
+            throw new BeanCreationException(beanName, "Не удалось создать реплики базы данных", e);
+        }
+        log.info("Подключено реплик для чтения: {}, задержка репликации {}", replicaCount, lag);
+        return new ReplicaRoutingDataSource(new ReplicatingDataSource(dataSource, replicas), replicas);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    @Override
+    public void destroy() throws SQLException {
+        for (Replica replica : replicas) {
+            replica.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import java.util.function.Supplier;
+
+/**
+ * Признак чтения, которое можно выполнить на реплике, и позиция последней записи потока.
+ * Реплика подходит для чтения, только если уже применила все записи этого потока, поэтому
+ * после записи запрос видит свои изменения: пока реплики отстают, он читает с основной базы.
+ * Запрос обрабатывается одним потоком, так что позиция действует в пределах запроса;
+ * на потоке из пула она остаётся от прошлого запроса, но к тому времени обычно уже применена.
+ */
+public final class ReplicaRouting {
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private ReplicaRouting() {
+    }
+
+    public static <T> T read(Supplier<T> query) {
+        State state = STATE.get();
+        state.reads++;
+        try {
+            return query.get();
+        } finally {
+            state.reads--;
+        }
+    }
+
+    public static void read(Runnable query) {
+        read(() -> {
+            query.run();
+            return null;
+        });
+    }
+
+    static boolean isRead() {
+        return STATE.get().reads > 0;
+    }
+
+    static long requiredPosition() {
+        return STATE.get().position;
+    }
+
+    static void wrote(long position) {
+        STATE.get().position = position;
+    }
+
+    private static final class State {
+        private int reads;
+        private long position;
+    }
+}
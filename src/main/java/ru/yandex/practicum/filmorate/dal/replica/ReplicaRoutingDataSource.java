@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выдаёт соединение с реплики для чтения, отмеченного {@link ReplicaRouting#read}, и с основной
+ * базы для всего остального. Реплики перебираются по кругу; берётся первая, которая уже
+ * применила записи текущего потока. Если таких нет, чтение идёт на основную базу.
+ * Внутри транзакции Spring соединение уже привязано к потоку, и все запросы идут на основную базу.
+ */
+public class ReplicaRoutingDataSource extends DelegatingDataSource {
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(ReplicatingDataSource primary, List<Replica> replicas) {
+        super(primary);
+        this.replicas = List.copyOf(replicas);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = findReplica();
+        return replica != null ? replica.getConnection() : super.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Replica replica = findReplica();
+        return replica != null ? replica.getConnection() : super.getConnection(username, password);
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    private Replica findReplica() {
+        if (!ReplicaRouting.isRead()) {
+            return null;
+        }
+        long required = ReplicaRouting.requiredPosition();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.hasApplied(required)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Обёртка над основной базой, которая передаёт репликам каждое изменение: SQL-запрос вместе
+ * с параметрами. Изменения в автокоммите уходят сразу после выполнения, изменения транзакции —
+ * при commit или rollback. Откаченные транзакции реплика выполняет и откатывает: счётчики id
+ * не транзакционны, и без этого id новых строк на реплике разошлись бы с основной базой.
+ * <p>
+ * Чтобы реплики применяли изменения в том же порядке, в каком их зафиксировала основная база,
+ * записи выполняются по одной: блокировка берётся перед первым изменяющим запросом и отпускается
+ * после фиксации или отката. Чтение блокировку не берёт. Это заменитель репликации
+ * для локального запуска, а не способ масштабировать запись.
+ */
+public class ReplicatingDataSource extends DelegatingDataSource {
+    private static final Set<String> READ_COMMANDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "SET",
+            "EXPLAIN", "SHOW", "SCRIPT", "HELP");
+
+    private final List<Replica> replicas;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile long position;
+
+    public ReplicatingDataSource(DataSource target, List<Replica> replicas) {
+        super(target);
+        this.replicas = List.copyOf(replicas);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return replicating(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return replicating(super.getConnection(username, password));
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    static boolean isWrite(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return !READ_COMMANDS.contains(trimmed.substring(0, end).toUpperCase(Locale.ROOT));
+    }
+
+    private Connection replicating(Connection connection) throws SQLException {
+        return wrap(Connection.class, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Вызывается под блокировкой записи.
+     */
+    private void publish(List<Change> changes, boolean committed) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        long next = position + 1;
+        List<Change> published = List.copyOf(changes);
+        replicas.forEach(replica -> replica.enqueue(next, published, committed));
+        position = next;
+        ReplicaRouting.wrote(next);
+    }
+
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ReplicatingDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        private final List<Change> pending = new ArrayList<>();
+        private boolean autoCommit;
+        private boolean locked;
+
+        ConnectionHandler(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.autoCommit = connection.getAutoCommit();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "commit":
+                    ReplicatingDataSource.invoke(connection, method, args);
+                    finish(true);
+                    return null;
+                case "rollback":
+                    ReplicatingDataSource.invoke(connection, method, args);
+                    if (args == null) {
+                        finish(false);
+                    }
+                    return null;
+                case "setAutoCommit":
+                    ReplicatingDataSource.invoke(connection, method, args);
+                    boolean enabled = (Boolean) args[0];
+                    if (enabled && !autoCommit) {
+                        finish(true);
+                    }
+                    autoCommit = enabled;
+                    return null;
+                case "close":
+                    finish(false);
+                    return ReplicatingDataSource.invoke(connection, method, args);
+                default:
+                    Object result = ReplicatingDataSource.invoke(connection, method, args);
+                    if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return wrap(method.getReturnType(), new StatementHandler(this, (Statement) result, sql));
+                    }
+                    return result;
+            }
+        }
+
+        void beforeWrite() {
+            if (!locked) {
+                writeLock.lock();
+                locked = true;
+            }
+        }
+
+        void afterWrite(List<Change> changes, boolean succeeded) {
+            if (succeeded) {
+                pending.addAll(changes);
+            } else {
+                changes.forEach(change -> pending.add(change.asFailed()));
+            }
+            if (autoCommit) {
+                finish(succeeded);
+            }
+        }
+
+        private void finish(boolean commit) {
+            try {
+                publish(pending, commit);
+            } finally {
+                pending.clear();
+                if (locked) {
+                    locked = false;
+                    writeLock.unlock();
+                }
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final ConnectionHandler connection;
+        private final Statement statement;
+        private final String preparedSql;
+        private final TreeMap<Integer, Change.Parameter> parameters = new TreeMap<>();
+        private final List<Change> batch = new ArrayList<>();
+
+        StatementHandler(ConnectionHandler connection, Statement statement, String preparedSql) {
+            this.connection = connection;
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer index) {
+                parameters.put(index, new Change.Parameter(method, args.clone()));
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                batch.add(args == null ? prepared() : new Change((String) args[0], null));
+            } else if (name.equals("clearBatch")) {
+                batch.clear();
+            } else if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                List<Change> changes = batch.stream().filter(change -> isWrite(change.sql())).toList();
+                batch.clear();
+                return execute(method, args, changes);
+            } else if (name.startsWith("execute") && !name.equals("executeQuery")) {
+                Change change = args != null && args.length > 0 && args[0] instanceof String sql
+                        ? new Change(sql, null)
+                        : prepared();
+                return execute(method, args, isWrite(change.sql()) ? List.of(change) : List.of());
+            }
+            return ReplicatingDataSource.invoke(statement, method, args);
+        }
+
+        private Change prepared() {
+            return new Change(preparedSql, List.copyOf(parameters.values()));
+        }
+
+        private Object execute(Method method, Object[] args, List<Change> changes) throws Throwable {
+            if (changes.isEmpty()) {
+                return ReplicatingDataSource.invoke(statement, method, args);
+            }
+            connection.beforeWrite();
+            boolean succeeded = false;
+            try {
+                Object result = ReplicatingDataSource.invoke(statement, method, args);
+                succeeded = true;
+                return result;
+            } finally {
+                connection.afterWrite(changes, succeeded);
+            }
+        }
+    }
+}
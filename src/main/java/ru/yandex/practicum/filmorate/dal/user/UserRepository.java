@@ -1,45 +1,81 @@
 package ru.yandex.practicum.filmorate.dal.user;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.dal.BaseRepository;
 import ru.yandex.practicum.filmorate.dal.friendship.FriendshipRepository;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.interfaceStorage.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
 public class UserRepository extends BaseRepository<User> implements UserStorage {
 
     FriendshipRepository friendshipRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityVersions versions;
 
-    public UserRepository(JdbcTemplate jdbc, RowMapper<User> mapper, FriendshipRepository friendshipRepository) {
+    public UserRepository(JdbcTemplate jdbc, RowMapper<User> mapper, FriendshipRepository friendshipRepository,
+                          TransactionTemplate transactionTemplate, EntityVersions versions) {
         super(jdbc, mapper);
         this.friendshipRepository = friendshipRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.versions = versions;
     }
 
+    private static final int BATCH_SIZE = 1000;
+
     private static final String FIND_ALL_QUERY = "SELECT * FROM users";
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM users WHERE id > ? ORDER BY id ASC LIMIT ?";
+    private static final String EXPORT_QUERY = "SELECT * FROM users ORDER BY id ASC";
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM users WHERE id = ?";
     private static final String CHECK_USER_ID = "SELECT COUNT(*) FROM users WHERE id = ?";
+    private static final String CHECK_USER_EMAIL = "SELECT COUNT(*) FROM users WHERE email = ?";
+    private static final String FIND_BY_EMAILS_OR_LOGINS_QUERY = "SELECT * FROM users WHERE email IN (%s) " +
+            "UNION SELECT * FROM users WHERE login IN (%s)";
     private static final String INSERT_QUERY = "INSERT INTO users(login, name, email, birthday)" +
             "VALUES (?, ?, ?, ?)";
     private static final String UPDATE_QUERY = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
 
     @Override
     public List<User> findAll() {
-        return findMany(FIND_ALL_QUERY);
+        return read(() -> findMany(FIND_ALL_QUERY));
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return read(() -> findMany(FIND_PAGE_QUERY, afterId, limit));
+    }
+
+    @Override
+    public void exportAll(Consumer<User> consumer) {
+        log.debug("Выгрузка всех пользователей из базы данных");
+        read(() -> stream(EXPORT_QUERY, rs -> {
+            consumer.accept(mapper.mapRow(rs, rs.getRow()));
+        }));
     }
 
     public Optional<User> findUserById(Long id) {
@@ -58,16 +94,19 @@ public class UserRepository extends BaseRepository<User> implements UserStorage
         return friendshipRepository.findCommonFriends(userId, friendId);
     }
 
+    @Override
+    public Collection<User> getFriendSuggestions(Long userId, int count) {
+        log.debug("Запрос рекомендаций друзей пользователя в хранилище");
+        return friendshipRepository.findFriendSuggestions(userId, count);
+    }
+
     @Override
     public User create(User user) {
         log.debug("Запрос на добавления пользователя ({}) в базу данных", user);
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(INSERT_QUERY, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, user.getLogin());
-            ps.setString(2, user.getName());
-            ps.setString(3, user.getEmail());
-            ps.setDate(4, Date.valueOf(user.getBirthday()));
+            setUserValues(ps, user);
             return ps;
         }, keyHolder);
         user.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
@@ -75,6 +114,109 @@ public class UserRepository extends BaseRepository<User> implements UserStorage
         return user;
     }
 
+    /**
+     * Добавляет пользователей пачками по BATCH_SIZE: каждая пачка вставляется JDBC-батчем в отдельной транзакции.
+     * Если батч не записан, пачка повторяется по одной строке: ошибочные строки передаются в rejected
+     * с индексом во входном списке, их id в результате остаются null, остальные строки сохраняются.
+     */
+    @Override
+    public List<Long> createAll(List<User> users, BiConsumer<Integer, String> rejected) {
+        log.debug("Пакетное добавление {} пользователей в базу данных", users.size());
+        List<Long> ids = new ArrayList<>(users.size());
+        int created = 0;
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            List<User> chunk = users.subList(from, Math.min(from + BATCH_SIZE, users.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertChunk(chunk));
+                chunk.forEach(user -> ids.add(user.getId()));
+                created += chunk.size();
+            } catch (DataAccessException e) {
+                log.warn("Пачка пользователей не записана, повтор по одной строке: {}", e.getMessage());
+                for (int i = 0; i < chunk.size(); i++) {
+                    User user = chunk.get(i);
+                    user.setId(null);
+                    try {
+                        ids.add(create(user).getId());
+                        created++;
+                    } catch (DataAccessException rowError) {
+                        log.warn("Пользователь {} не записан: {}", user.getLogin(), rowError.getMessage());
+                        ids.add(null);
+                        rejected.accept(from + i, rejectionMessage(rowError));
+                    }
+                }
+            }
+        }
+        log.debug("В базу данных добавлено {} пользователей", created);
+        return ids;
+    }
+
+    /**
+     * Находит пользователей, у которых email или логин совпадает с одним из переданных.
+     * Значения проверяются пачками по BATCH_SIZE, каждая пачка — один запрос по уникальным индексам.
+     */
+    @Override
+    public Collection<User> findByEmailsOrLogins(Collection<String> emails, Collection<String> logins) {
+        List<String> emailList = new ArrayList<>(emails);
+        List<String> loginList = new ArrayList<>(logins);
+        Collection<User> users = new LinkedHashSet<>();
+        for (int from = 0; from < Math.max(emailList.size(), loginList.size()); from += BATCH_SIZE) {
+            List<String> emailChunk = emailList.subList(Math.min(from, emailList.size()),
+                    Math.min(from + BATCH_SIZE, emailList.size()));
+            List<String> loginChunk = loginList.subList(Math.min(from, loginList.size()),
+                    Math.min(from + BATCH_SIZE, loginList.size()));
+            // Пустой список IN () недопустим, поэтому подставляем NULL, который ни с чем не совпадает
+            String query = String.format(FIND_BY_EMAILS_OR_LOGINS_QUERY,
+                    emailChunk.isEmpty() ? "NULL" : inPlaceholders(emailChunk.size()),
+                    loginChunk.isEmpty() ? "NULL" : inPlaceholders(loginChunk.size()));
+            List<Object> params = new ArrayList<>(emailChunk);
+            params.addAll(loginChunk);
+            users.addAll(findMany(query, params.toArray()));
+        }
+        return users;
+    }
+
+    private void setUserValues(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getLogin());
+        ps.setString(2, user.getName());
+        ps.setString(3, user.getEmail());
+        ps.setDate(4, Date.valueOf(user.getBirthday()));
+    }
+
+    private static String rejectionMessage(DataAccessException e) {
+        if (e instanceof DataIntegrityViolationException violation) {
+            if (violates(violation, "USERS(EMAIL")) {
+                return "Этот имейл уже использутся";
+            }
+            if (violates(violation, "USERS(LOGIN")) {
+                return "Этот логин уже используется";
+            }
+        }
+        return "Пользователь не записан в базу данных";
+    }
+
+    private void insertChunk(List<User> chunk) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_QUERY, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setUserValues(ps, chunk.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                },
+                keyHolder
+        );
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < chunk.size(); i++) {
+            chunk.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+
     @Override
     public User update(User user) {
         log.info("Запрос на бновление пользователя в базе данных: email={}, login={}, name={}, birthday={}, id={}",
@@ -86,6 +228,7 @@ public class UserRepository extends BaseRepository<User> implements UserStorage
                 user.getEmail(),
                 Date.valueOf(user.getBirthday()),
                 user.getId());
+        versions.usersChanged();
         log.debug("Пользователь ({}) обновлен в базе данных", user.getId());
         return user;
     }
@@ -106,4 +249,9 @@ public class UserRepository extends BaseRepository<User> implements UserStorage
     public boolean checkId(Long id) {
         return checkId(CHECK_USER_ID, id);
     }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return checkId(CHECK_USER_EMAIL, email);
+    }
 }
@@ -1,6 +1,9 @@
 package ru.yandex.practicum.filmorate.exception;
 
+import org.springframework.core.NestedRuntimeException;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -45,4 +48,14 @@ public class ErrorHandler {
                 e.getMessage()
         );
     }
+
+    //503: база данных перегружена, соединение не получено за filmorate.jdbc.acquire-timeout
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleConnectionUnavailable(final NestedRuntimeException e) {
+        return new ErrorResponse(
+                "Сервис временно перегружен, повторите запрос позже.",
+                e.getMostSpecificCause().getMessage()
+        );
+    }
 }
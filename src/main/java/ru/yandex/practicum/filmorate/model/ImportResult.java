@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Результат пакетного импорта: ids совпадает по порядку с входным списком,
+ * для отклонённых строк в нём null, а причина лежит в errors.
+ */
+@Data
+public class ImportResult {
+    private final List<Long> ids;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public void reject(int index, String message) {
+        errors.add(new RowError(index, message));
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private final int index;
+        private final String message;
+    }
+}
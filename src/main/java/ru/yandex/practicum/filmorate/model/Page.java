@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@AllArgsConstructor
+public class Page<T> {
+    public static final int DEFAULT_SIZE = 100;
+    public static final int MAX_SIZE = 1000;
+
+    private final List<T> items;
+    private final Long nextCursor;
+
+    /**
+     * Собирает страницу из выборки размером limit + 1: лишняя строка означает,
+     * что за последним элементом страницы есть ещё данные.
+     */
+    public static <T> Page<T> of(List<T> rows, int limit, Function<T, Long> cursor) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(items, cursor.apply(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class QueryMetricsReport {
+    private final QueryStats connectionWait;
+    private final List<QueryStats> statements;
+}
@@ -6,13 +6,18 @@ import ru.yandex.practicum.filmorate.exception.ConditionsNotMetException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.storage.interfaceStorage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.interfaceStorage.UserStorage;
 
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 
 @Slf4j
@@ -32,22 +37,86 @@ public class FilmService { //логика обработки запросов
                 });
     }
 
+    public CompletableFuture<Film> findFilmByIdAsync(Long id) {
+        log.info("Обработка GET-запроса на получение фильма по айди.");
+        return filmStorage.findFilmByIdAsync(id)
+                .thenApply(film -> film.orElseThrow(() -> {
+                    log.warn("Фильм с id = {} не найден", id);
+                    return new NotFoundException("Фильм с id = " + id + " не найден");
+                }));
+    }
+
     public Collection<Film> findAll() {
         log.info("Обработка GET-запроса на получение всех фильмов.");
         return filmStorage.findAll();
     }
 
+    public Page<Film> findPage(Long after, Integer limit) {
+        log.info("Обработка GET-запроса на получение страницы фильмов после id {}.", after);
+        int pageSize = limit == null ? Page.DEFAULT_SIZE : limit;
+        if (pageSize <= 0 || pageSize > Page.MAX_SIZE) {
+            log.warn("Валидация не пройдена — неверный размер страницы: {}", limit);
+            throw new ValidationException("Размер страницы должен быть от 1 до " + Page.MAX_SIZE);
+        }
+        Collection<Film> films = filmStorage.findPage(after == null ? 0 : after, pageSize + 1);
+        return Page.of(new ArrayList<>(films), pageSize, Film::getId);
+    }
+
+    public void exportAll(Consumer<Film> consumer) {
+        log.info("Обработка GET-запроса на выгрузку всех фильмов.");
+        filmStorage.exportAll(consumer);
+    }
+
     public Collection<Film> findPopular(int count) {
         log.info("Обработка GET-запроса на получение популярных фильмов.");
         return filmStorage.findPopular(count);
     }
 
+    public Collection<Film> search(String query, int count) {
+        log.info("Обработка GET-запроса на поиск фильмов: {}", query);
+        if (query == null || query.isBlank()) {
+            log.warn("Валидация не пройдена — пустой поисковый запрос");
+            throw new ValidationException("Поисковый запрос не указан");
+        }
+        if (count <= 0) {
+            log.warn("Валидация не пройдена — неверное количество результатов поиска: {}", count);
+            throw new ValidationException("Количество результатов должно быть больше нуля");
+        }
+        return filmStorage.search(query, count);
+    }
+
+    public Collection<Film> findRecommendations(Long userId, int count) {
+        if (!userStorage.checkId(userId)) {
+            log.warn("Пользователь с id = {}, не найден", userId);
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        if (count <= 0) {
+            log.warn("Валидация не пройдена — неверное количество рекомендаций: {}", count);
+            throw new ValidationException("Количество рекомендаций должно быть больше нуля");
+        }
+
+        log.info("Обработка GET-запроса на рекомендации фильмов для пользователя с id = {}.", userId);
+        return filmStorage.findRecommendations(userId, count);
+    }
+
     public Film create(Film film) {
         log.info("Обработка POST-запроса на добавление фильма: {}", film);
         check(film);
         return filmStorage.create(film);
     }
 
+    public List<Long> createAll(List<Film> films) {
+        log.info("Обработка POST-запроса на пакетное добавление {} фильмов", films.size());
+        for (int i = 0; i < films.size(); i++) {
+            try {
+                check(films.get(i));
+            } catch (ValidationException e) {
+                throw new ValidationException("Фильм №" + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return filmStorage.createAll(films);
+    }
+
     public Film update(Film newFilm) {
         log.info("Обработка PUT-запрос на обновление фильма: {}", newFilm);
         if (newFilm.getId() == null) {
@@ -81,35 +150,17 @@ public class FilmService { //логика обработки запросов
         return filmStorage.update(film);
     }
 
+    /**
+     * Существование фильма и пользователя проверяет хранилище в том же запросе, что и запись лайка.
+     */
     public void putLike(Long filmId, Long userId) {
-        if (!filmStorage.checkId(filmId)) {
-            log.warn("Фильм с id = {}, не найден", filmId);
-            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
-        }
-
-        if (!userStorage.checkId(userId)) {
-            log.warn("Пользователь с id = {}, не найден", userId);
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-
-        log.info("Лайк поставлен фильму с id {}.", filmId);
         filmStorage.putLike(userId, filmId);
+        log.info("Лайк поставлен фильму с id {}.", filmId);
     }
 
     public void deleteLike(Long filmId, Long userId) {
-        if (!filmStorage.checkId(filmId)) {
-            log.warn("Фильм с id = {}, не найден", filmId);
-            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
-        }
-
-        if (!userStorage.checkId(userId)) {
-            log.warn("Пользователь с id = {}, не найден", userId);
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-
-
-        log.info("Лайк фильму с id {}, удален.", filmId);
         filmStorage.deleteLike(userId, filmId);
+        log.info("Лайк фильму с id {}, удален.", filmId);
     }
 
     private void check(Film film) {
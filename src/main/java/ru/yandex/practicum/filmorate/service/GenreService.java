@@ -4,8 +4,9 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.reference.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.storage.interfaceStorage.GenreStorage;
 
 import java.util.Collection;
 
@@ -14,14 +15,15 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class GenreService {
 
-    private final GenreStorage genreStorage;
+    private final ReferenceDataCache referenceData;
 
     public Collection<Genre> getAllGenres() {
-        return genreStorage.findAll();
+        return referenceData.findAllGenres();
     }
 
     public Genre findByGenreId(Long id) {
         log.info("Ищем жанр в сервисе по id {}", id);
-        return genreStorage.findById(id);
+        return referenceData.findGenre(id)
+                .orElseThrow(() -> new NotFoundException("Данного жанра нет в списке"));
     }
 }
@@ -3,8 +3,9 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.reference.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.storage.interfaceStorage.MpaStorage;
 
 import java.util.Collection;
 
@@ -13,14 +14,15 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class MpaService {
 
-    private final MpaStorage mpaStorage;
+    private final ReferenceDataCache referenceData;
 
     public Collection<Mpa> getAllRatings() {
-        return mpaStorage.findAll();
+        return referenceData.findAllRatings();
     }
 
     public Mpa findByMpaId(Long id) {
         log.info("Ищем рейтинг в сервисе по id {}", id);
-        return mpaStorage.findById(id);
+        return referenceData.findRating(id)
+                .orElseThrow(() -> new NotFoundException("Данного рейтинга нет в списке"));
     }
 }
@@ -7,11 +7,20 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ConditionsNotMetException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.interfaceStorage.UserStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -35,6 +44,22 @@ public class UserService {
         return userStorage.findAll();
     }
 
+    public Page<User> findPage(Long after, Integer limit) {
+        log.info("Получен GET-запрос на получение страницы пользователей после id {}.", after);
+        int pageSize = limit == null ? Page.DEFAULT_SIZE : limit;
+        if (pageSize <= 0 || pageSize > Page.MAX_SIZE) {
+            log.warn("Валидация не пройдена — неверный размер страницы: {}", limit);
+            throw new ValidationException("Размер страницы должен быть от 1 до " + Page.MAX_SIZE);
+        }
+        Collection<User> users = userStorage.findPage(after == null ? 0 : after, pageSize + 1);
+        return Page.of(new ArrayList<>(users), pageSize, User::getId);
+    }
+
+    public void exportAll(Consumer<User> consumer) {
+        log.info("Получен GET-запрос на выгрузку всех пользователей.");
+        userStorage.exportAll(consumer);
+    }
+
     public Collection<User> getFriends(Long id) {
         if (!userStorage.checkId(id)) {
             throw new NotFoundException("Пользователь с id = " + id + " не найден");
@@ -55,6 +80,19 @@ public class UserService {
         return userStorage.getCommonFriends(userId, otherId);
     }
 
+    public Collection<User> getFriendSuggestions(Long userId, int count) {
+        if (!userStorage.checkId(userId)) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        if (count <= 0) {
+            log.warn("Валидация не пройдена — неверное количество рекомендаций: {}", count);
+            throw new ValidationException("Количество рекомендаций должно быть больше нуля");
+        }
+
+        log.info("Рекомендации друзей для пользователя с id = {}", userId);
+        return userStorage.getFriendSuggestions(userId, count);
+    }
+
     public User create(User user) {
         log.info("Получен POST-запрос на создание пользователя: {}", user);
         check(user);
@@ -67,6 +105,72 @@ public class UserService {
         return userStorage.create(user);
     }
 
+    /**
+     * Создаёт пользователей из списка, не прерываясь на ошибочных строках.
+     * Занятость email и логинов проверяется одним набором запросов на весь список,
+     * повторы внутри списка отсекаются в памяти: первая строка принимается, остальные отклоняются.
+     * Строки, которые база не приняла (например, email занят параллельным запросом), тоже попадают в ошибки.
+     */
+    public ImportResult createAll(List<User> users) {
+        log.info("Получен POST-запрос на пакетное создание {} пользователей", users.size());
+        ImportResult result = new ImportResult(new ArrayList<>(Collections.nCopies(users.size(), null)));
+
+        Set<String> emails = new HashSet<>();
+        Set<String> logins = new HashSet<>();
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            try {
+                checkFields(user);
+            } catch (ValidationException e) {
+                result.reject(i, e.getMessage());
+                continue;
+            }
+            if (emails.contains(user.getEmail())) {
+                result.reject(i, "Имейл повторяется в списке");
+            } else if (logins.contains(user.getLogin())) {
+                result.reject(i, "Логин повторяется в списке");
+            } else {
+                emails.add(user.getEmail());
+                logins.add(user.getLogin());
+                accepted.add(i);
+            }
+        }
+
+        Set<String> usedEmails = new HashSet<>();
+        Set<String> usedLogins = new HashSet<>();
+        for (User existing : userStorage.findByEmailsOrLogins(emails, logins)) {
+            usedEmails.add(existing.getEmail());
+            usedLogins.add(existing.getLogin());
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        List<User> toCreate = new ArrayList<>();
+        for (int i : accepted) {
+            User user = users.get(i);
+            if (usedEmails.contains(user.getEmail())) {
+                result.reject(i, "Этот имейл уже использутся");
+            } else if (usedLogins.contains(user.getLogin())) {
+                result.reject(i, "Этот логин уже используется");
+            } else {
+                if (user.getName() == null || user.getName().isBlank()) {
+                    user.setName(user.getLogin());
+                }
+                indexes.add(i);
+                toCreate.add(user);
+            }
+        }
+
+        List<Long> ids = userStorage.createAll(toCreate, (i, message) -> result.reject(indexes.get(i), message));
+        for (int i = 0; i < ids.size(); i++) {
+            result.getIds().set(indexes.get(i), ids.get(i));
+        }
+        result.getErrors().sort(Comparator.comparingInt(ImportResult.RowError::getIndex));
+        log.info("Создано {} пользователей, отклонено {}", users.size() - result.getErrors().size(),
+                result.getErrors().size());
+        return result;
+    }
+
     public User update(User newUser) {
         log.info("Получен PUT-запрос на обновление пользователя: {}", newUser);
 
@@ -82,7 +186,7 @@ public class UserService {
                 });
 
         if (newUser.getEmail() != null && !newUser.getEmail().isBlank() && !newUser.getEmail().equals(user.getEmail())) {
-            if (userStorage.findAll().stream().anyMatch(anyUser -> anyUser.getEmail().equals(newUser.getEmail()))) {
+            if (userStorage.existsByEmail(newUser.getEmail())) {
                 log.warn("Обновление отклонено — email {} уже используется", newUser.getEmail());
                 throw new ConditionsNotMetException("Этот имейл уже использутся");
             }
@@ -103,39 +207,31 @@ public class UserService {
         return userStorage.update(newUser);
     }
 
+    /**
+     * Существование пользователей проверяет хранилище в том же запросе, что и запись дружбы.
+     */
     public void putFriend(Long userId, Long friendId) {
-        if (!userStorage.checkId(userId)) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-
-        if (!userStorage.checkId(friendId)) {
-            throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
-        }
-
         userStorage.putFriend(userId, friendId);
         log.info("Пользователь с ID = {} добавил в друзья пользователя с ID = {}", userId, friendId);
     }
 
     public void deleteFriend(Long userId, Long friendId) {
-        if (!userStorage.checkId(userId)) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-
-        if (!userStorage.checkId(friendId)) {
-            throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
-        }
-
         userStorage.deleteFriend(userId, friendId);
         log.info("Пользователь с ID = {} удалил из друзей пользователя с ID = {}", userId, friendId);
     }
 
     private void check(User newUser) {
+        checkFields(newUser);
+        if (userStorage.existsByEmail(newUser.getEmail())) {
+            log.warn("Валидация не пройдена — email уже используется: {}", newUser.getEmail());
+            throw new ValidationException("Этот имейл уже использутся");
+        }
+    }
+
+    private void checkFields(User newUser) {
         if (newUser.getEmail() == null || newUser.getEmail().isBlank() || !newUser.getEmail().contains("@")) {
             log.warn("Валидация не пройдена — некорректный email: {}", newUser.getEmail());
             throw new ValidationException("Имейл указан неверно");
-        } else if (userStorage.findAll().stream().anyMatch(user -> user.getEmail().equals(newUser.getEmail()))) {
-            log.warn("Валидация не пройдена — email уже используется: {}", newUser.getEmail());
-            throw new ValidationException("Этот имейл уже использутся");
         } else if (newUser.getLogin() == null || newUser.getLogin().isBlank()) {
             log.warn("Валидация не пройдена — логин отсутствует");
             throw new ValidationException("Логин указан неверно");
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики версий сущностей, из которых строятся сильные ETag. Репозитории увеличивают версию
+ * после записи в базу данных, контроллеры читают её до запроса к базе: если ответ успел
+ * измениться между чтением версии и запросом, он уйдёт со старым ETag и будет запрошен заново
+ * в следующий раз, но устаревшие данные под новым ETag не отдаются.
+ * Счётчики живут в памяти, поэтому в ETag входит случайная эпоха процесса: после перезапуска
+ * все старые ETag становятся недействительными.
+ */
+@Component
+public class EntityVersions {
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final Map<Long, Long> films = new ConcurrentHashMap<>();
+    private final Map<Long, Long> friends = new ConcurrentHashMap<>();
+    private final AtomicLong popular = new AtomicLong();
+    private final AtomicLong users = new AtomicLong();
+
+    public void filmChanged(long filmId) {
+        films.merge(filmId, 1L, Long::sum);
+        popular.incrementAndGet();
+    }
+
+    public void popularChanged() {
+        popular.incrementAndGet();
+    }
+
+    public void friendsChanged(long userId) {
+        friends.merge(userId, 1L, Long::sum);
+    }
+
+    /**
+     * Данные пользователя входят в списки друзей других пользователей, поэтому
+     * изменение любого пользователя меняет ETag всех списков друзей.
+     */
+    public void usersChanged() {
+        users.incrementAndGet();
+    }
+
+    public String filmTag(long filmId) {
+        return tag("film-" + filmId + "-" + films.getOrDefault(filmId, 0L));
+    }
+
+    public String popularTag() {
+        return tag("popular-" + popular.get());
+    }
+
+    public String friendsTag(long userId) {
+        return tag("friends-" + userId + "-" + friends.getOrDefault(userId, 0L) + "-" + users.get());
+    }
+
+    private String tag(String version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+}
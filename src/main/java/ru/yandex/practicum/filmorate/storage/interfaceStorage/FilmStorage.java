@@ -3,18 +3,33 @@ package ru.yandex.practicum.filmorate.storage.interfaceStorage;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Optional<Film> findFilmById(Long id);
 
+    CompletableFuture<Optional<Film>> findFilmByIdAsync(Long id);
+
     Collection<Film> findAll();
 
+    Collection<Film> findPage(long afterId, int limit);
+
+    void exportAll(Consumer<Film> consumer);
+
     Collection<Film> findPopular(int count);
 
+    Collection<Film> findRecommendations(Long userId, int count);
+
+    Collection<Film> search(String query, int count);
+
     Film create(Film film);
 
+    List<Long> createAll(List<Film> films);
+
     Film update(Film film);
 
     boolean checkId(Long id);
@@ -3,7 +3,10 @@ package ru.yandex.practicum.filmorate.storage.interfaceStorage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
@@ -11,12 +14,22 @@ public interface UserStorage {
 
     Collection<User> findAll();
 
+    Collection<User> findPage(long afterId, int limit);
+
+    void exportAll(Consumer<User> consumer);
+
     User create(User user);
 
+    List<Long> createAll(List<User> users, BiConsumer<Integer, String> rejected);
+
+    Collection<User> findByEmailsOrLogins(Collection<String> emails, Collection<String> logins);
+
     User update(User user);
 
     boolean checkId(Long id);
 
+    boolean existsByEmail(String email);
+
     void putFriend(Long userId, Long friendId);
 
     Collection<User> getFriends(Long userId);
@@ -24,4 +37,6 @@ public interface UserStorage {
     void deleteFriend(Long userId, Long friendId);
 
     Collection<User> getCommonFriends(Long userId, Long friendId);
+
+    Collection<User> getFriendSuggestions(Long userId, int count);
 }
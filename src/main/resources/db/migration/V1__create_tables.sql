@@ -0,0 +1,50 @@
+CREATE TABLE users (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    login VARCHAR(100) NOT NULL UNIQUE,
+    name VARCHAR(255) NOT NULL,
+    birthday DATE NOT NULL
+);
+
+CREATE TABLE rating_mpa (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(20) NOT NULL
+);
+
+CREATE TABLE genre (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(50) NOT NULL
+);
+
+CREATE TABLE films (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(100) NOT NULL,
+    description VARCHAR(200),
+    release_date DATE NOT NULL,
+    duration INT NOT NULL,
+    rating_id BIGINT,
+    FOREIGN KEY (rating_id) REFERENCES rating_mpa(id)
+);
+
+CREATE TABLE film_genre (
+    film_id BIGINT NOT NULL,
+    genre_id BIGINT NOT NULL,
+    FOREIGN KEY (film_id) REFERENCES films(id),
+    FOREIGN KEY (genre_id) REFERENCES genre(id)
+);
+
+CREATE TABLE likes (
+    user_id BIGINT,
+    film_id BIGINT,
+    PRIMARY KEY (user_id, film_id),
+    CONSTRAINT likes_user_fk FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT likes_film_fk FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE
+);
+
+CREATE TABLE friendship (
+    user_id BIGINT,
+    friend_id BIGINT,
+    PRIMARY KEY (user_id, friend_id),
+    CONSTRAINT friendship_user_fk FOREIGN KEY (user_id) REFERENCES users(id),
+    CONSTRAINT friendship_friend_fk FOREIGN KEY (friend_id) REFERENCES users(id)
+);
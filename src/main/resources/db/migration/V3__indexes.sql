@@ -0,0 +1,49 @@
+-- Таблицы со связями пересобираются целиком, а не через ALTER TABLE ... DROP CONSTRAINT: в базах,
+-- созданных прежним schema.sql, внешние ключи безымянные, и миграция не должна зависеть от их имён.
+-- Ключи получают имена, по которым репозитории разбирают ошибки записи.
+-- H2 сам создаёт индекс на столбцы внешнего ключа, если подходящего нет. Поэтому составные индексы
+-- создаются раньше внешних ключей: ключ переиспользует индекс, и отдельного однострочного индекса,
+-- который оптимизатор выбрал бы вместо составного, не остаётся.
+
+-- film_genre без первичного ключа допускала дубликаты: при пересборке остаётся по одной строке.
+-- Жанры фильма и фильмов страницы: WHERE film_id = ? / film_id IN (...) ORDER BY film_id, genre_id
+DROP TABLE IF EXISTS film_genre_v3;
+CREATE TABLE film_genre_v3 (
+    film_id BIGINT NOT NULL,
+    genre_id BIGINT NOT NULL,
+    CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id)
+);
+INSERT INTO film_genre_v3 (film_id, genre_id) SELECT DISTINCT film_id, genre_id FROM film_genre;
+DROP TABLE film_genre;
+ALTER TABLE film_genre_v3 RENAME TO film_genre;
+CREATE INDEX film_genre_genre_idx ON film_genre (genre_id);
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_film_fk FOREIGN KEY (film_id) REFERENCES films(id);
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_genre_fk FOREIGN KEY (genre_id) REFERENCES genre(id);
+
+-- Число лайков фильма: JOIN likes ON film_id ... GROUP BY читает только индекс
+DROP TABLE IF EXISTS likes_v3;
+CREATE TABLE likes_v3 (
+    user_id BIGINT,
+    film_id BIGINT,
+    CONSTRAINT likes_pk PRIMARY KEY (user_id, film_id)
+);
+INSERT INTO likes_v3 (user_id, film_id) SELECT user_id, film_id FROM likes;
+DROP TABLE likes;
+ALTER TABLE likes_v3 RENAME TO likes;
+CREATE INDEX likes_film_idx ON likes (film_id, user_id);
+ALTER TABLE likes ADD CONSTRAINT likes_user_fk FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
+ALTER TABLE likes ADD CONSTRAINT likes_film_fk FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE;
+
+-- Кто добавил пользователя в друзья и проверка friendship_friend_fk при удалении пользователя
+DROP TABLE IF EXISTS friendship_v3;
+CREATE TABLE friendship_v3 (
+    user_id BIGINT,
+    friend_id BIGINT,
+    CONSTRAINT friendship_pk PRIMARY KEY (user_id, friend_id)
+);
+INSERT INTO friendship_v3 (user_id, friend_id) SELECT user_id, friend_id FROM friendship;
+DROP TABLE friendship;
+ALTER TABLE friendship_v3 RENAME TO friendship;
+CREATE INDEX friendship_friend_idx ON friendship (friend_id, user_id);
+ALTER TABLE friendship ADD CONSTRAINT friendship_user_fk FOREIGN KEY (user_id) REFERENCES users(id);
+ALTER TABLE friendship ADD CONSTRAINT friendship_friend_fk FOREIGN KEY (friend_id) REFERENCES users(id);
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:film-controller;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+public class FilmControllerTest {
+    private static final String FILM_JSON = """
+            {%s"name":"%s","description":"Description","releaseDate":"2000-01-01","duration":100,"mpa":{"id":1}}""";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityVersions versions;
+
+    @Test
+    @DisplayName("Фильм по id: 304 на текущий ETag, после обновления ETag и тело меняются")
+    void shouldAnswerNotModifiedUntilFilmChanges() throws Exception {
+        long id = createFilm("before");
+
+        MockHttpServletResponse first = perform(get("/films/" + id));
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(etag).isNotBlank();
+
+        MockHttpServletResponse notModified = perform(get("/films/" + id).header(HttpHeaders.IF_NONE_MATCH, etag));
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        assertThat(notModified.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+        assertThat(notModified.getContentAsByteArray()).isEmpty();
+
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(FILM_JSON.formatted("\"id\":" + id + ",", "after")))
+                .andExpect(status().isOk());
+
+        MockHttpServletResponse changed = perform(get("/films/" + id).header(HttpHeaders.IF_NONE_MATCH, etag));
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getHeader(HttpHeaders.ETAG)).isNotBlank().isNotEqualTo(etag);
+        assertThat(changed.getContentAsString()).contains("\"after\"");
+    }
+
+    @Test
+    @DisplayName("Ответ 404 не получает ETag, созданный позже фильм отдаётся с новым ETag")
+    void shouldNotTagMissingFilm() throws Exception {
+        long nextId = createFilm("existing") + 1;
+        String missingTag = versions.filmTag(nextId);
+
+        MockHttpServletResponse missing = perform(get("/films/" + nextId));
+        assertThat(missing.getStatus()).isEqualTo(404);
+        assertThat(missing.getHeader(HttpHeaders.ETAG)).isNull();
+
+        assertThat(createFilm("created")).isEqualTo(nextId);
+        MockHttpServletResponse created = perform(get("/films/" + nextId).header(HttpHeaders.IF_NONE_MATCH, missingTag));
+        assertThat(created.getStatus()).isEqualTo(200);
+        assertThat(created.getContentAsString()).contains("\"created\"");
+    }
+
+    @Test
+    @DisplayName("Сжатый ответ отдаётся только если gzip принят с ненулевым q")
+    void shouldNegotiateGzipByQuality() throws Exception {
+        long id = createFilm("gzip ".repeat(19));
+
+        assertThat(encoding(id, "gzip")).isEqualTo("gzip");
+        assertThat(encoding(id, "deflate, gzip;q=0.5")).isEqualTo("gzip");
+        assertThat(encoding(id, "*")).isEqualTo("gzip");
+        assertThat(encoding(id, "gzip;q=0")).isNull();
+        assertThat(encoding(id, "gzip; Q=0.0, *")).isNull();
+        assertThat(encoding(id, "*;q=0")).isNull();
+        assertThat(encoding(id, "identity")).isNull();
+    }
+
+    private String encoding(long id, String acceptEncoding) throws Exception {
+        MockHttpServletResponse response = perform(get("/films/" + id)
+                .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding));
+        assertThat(response.getStatus()).isEqualTo(200);
+        return response.getHeader(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    private MockHttpServletResponse perform(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result.getResponse();
+    }
+
+    private long createFilm(String name) throws Exception {
+        String body = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(FILM_JSON.formatted("", name)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) JsonPath.read(body, "$.id")).longValue();
+    }
+}
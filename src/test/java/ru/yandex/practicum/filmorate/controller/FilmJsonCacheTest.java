@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JsonTest
+public class FilmJsonCacheTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("Кэш готового JSON фильма по ETag с ограничением размера")
+    void shouldCacheFilmJsonByEtag() throws IOException {
+        FilmJsonCache cache = new FilmJsonCache(objectMapper, 2, true);
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        mpa.setName("G");
+        Film film = new Film();
+        film.setId(1L);
+        film.setName("Cached Film");
+        film.setDescription("Описание ".repeat(30));
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(mpa);
+
+        assertThat(cache.find(1L, "\"v1\"")).isEmpty();
+        FilmJsonCache.Entry entry = cache.put(1L, "\"v1\"", film);
+
+        assertThat(entry.getJson()).isEqualTo(objectMapper.writeValueAsBytes(film));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(entry.getGzipped()))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(entry.getJson());
+        }
+        assertThat(cache.find(1L, "\"v1\"")).containsSame(entry);
+        assertThat(cache.find(1L, "\"v2\"")).isEmpty();
+
+        // Первый фильм прочитан, поэтому при переполнении вытесняется второй
+        cache.put(2L, "\"v1\"", film);
+        cache.put(3L, "\"v1\"", film);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.find(1L, "\"v1\"")).isPresent();
+        assertThat(cache.find(2L, "\"v1\"")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Вытеснение продолжает обход с прошлого места и не трогает только что добавленную запись")
+    void shouldKeepClockHandBetweenEvictions() {
+        Film film = new Film();
+        film.setName("Cached Film");
+        FilmJsonCache cache = new FilmJsonCache(objectMapper, 3, false);
+        cache.put(1L, "\"v1\"", film);
+        cache.put(2L, "\"v1\"", film);
+        cache.put(3L, "\"v1\"", film);
+        cache.find(1L, "\"v1\"");
+
+        // Первый обход снимает отметку с 1 и вытесняет 2, второй продолжает с 3, а не начинает снова с 1
+        cache.put(4L, "\"v1\"", film);
+        cache.put(5L, "\"v1\"", film);
+        assertThat(cache.find(1L, "\"v1\"")).isPresent();
+        assertThat(cache.find(2L, "\"v1\"")).isEmpty();
+        assertThat(cache.find(3L, "\"v1\"")).isEmpty();
+
+        FilmJsonCache single = new FilmJsonCache(objectMapper, 1, false);
+        single.put(2L, "\"v1\"", film);
+        single.put(1L, "\"v1\"", film);
+        assertThat(single.find(1L, "\"v1\"")).isPresent();
+        assertThat(single.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import ru.yandex.practicum.filmorate.dal.metrics.QueryCounter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Бюджет обращений к базе данных на эндпоинт: тест падает, если запрос стал делать больше
+ * обращений, чем записано здесь, например из-за N+1 при обходе жанров или друзей.
+ * Бюджет поднимается только осознанно, вместе с изменением, которое добавило запрос.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:query-budget;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@ActiveProfiles("diagnostics")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class QueryBudgetTest {
+    private static final String FILM_JSON = """
+            {"name":"Budget Film","description":"Description","releaseDate":"2000-01-01","duration":100,
+            "mpa":{"id":1},"genres":[{"id":1},{"id":2},{"id":3}]}""";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    void createData() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content("""
+                    {"email":"budget%d@example.com","login":"budget%d","name":"Budget","birthday":"1990-01-01"}
+                    """.formatted(i, i))).andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(FILM_JSON))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isNoContent());
+        mockMvc.perform(put("/users/2/friends/3")).andExpect(status().isNoContent());
+    }
+
+    @Test
+    @DisplayName("Бюджет обращений к базе для эндпоинтов фильмов")
+    void filmEndpointsShouldStayWithinQueryBudget() throws Exception {
+        assertQueryBudget(post("/films").contentType(MediaType.APPLICATION_JSON).content(FILM_JSON), 6);
+        assertQueryBudget(put("/films/1/like/1"), 1);
+        assertQueryBudget(put("/films/1/like/1"), 1);
+        assertQueryBudget(delete("/films/1/like/1"), 1);
+        assertQueryBudget(get("/films/popular"), 2);
+        assertQueryBudget(get("/films?limit=10&after=0"), 2);
+        assertQueryBudget(get("/films/search?q=budget"), 2);
+    }
+
+    @Test
+    @DisplayName("Бюджет обращений к базе для эндпоинтов пользователей")
+    void userEndpointsShouldStayWithinQueryBudget() throws Exception {
+        assertQueryBudget(put("/users/1/friends/2"), 1);
+        assertQueryBudget(put("/users/1/friends/2"), 1);
+        assertQueryBudget(get("/users/1/friends"), 2);
+        assertQueryBudget(get("/users/1/friends/common/2"), 3);
+        assertQueryBudget(get("/users/1/friends/suggestions"), 1);
+        assertQueryBudget(get("/users/1/recommendations"), 1);
+    }
+
+    @Test
+    @DisplayName("Фильм по id: учитываются запросы из пула, повторное чтение идёт из кэша JSON")
+    void filmByIdShouldCountAsyncQueriesAndHitCache() throws Exception {
+        String path = "/films/" + createFilm();
+
+        QueryCounter.Counter miss = QueryCounter.measure(() -> getAsync(path, "2"));
+        QueryCounter.Counter hit = QueryCounter.measure(() -> getAsync(path, "0"));
+
+        assertThat(miss.getRoundTrips()).isEqualTo(2);
+        assertThat(hit.getRoundTrips()).isZero();
+    }
+
+    @Test
+    @DisplayName("Потоковая выгрузка не буферизуется фильтром и не получает заголовки счётчиков")
+    void exportShouldBypassQueryCountFilter() throws Exception {
+        MvcResult started = mockMvc.perform(get("/films/export")).andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(QueryCountHeaderFilter.QUERY_COUNT_HEADER))
+                .andExpect(content().string(containsString("Budget Film")));
+    }
+
+    private void getAsync(String path, String expectedQueryCount) throws Exception {
+        MvcResult started = mockMvc.perform(get(path)).andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountHeaderFilter.QUERY_COUNT_HEADER, expectedQueryCount));
+    }
+
+    private long createFilm() throws Exception {
+        String body = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(FILM_JSON))
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) JsonPath.read(body, "$.id")).longValue();
+    }
+
+    private void assertQueryBudget(RequestBuilder request, int maxRoundTrips) throws Exception {
+        MockHttpServletRequest mockRequest = request.buildRequest(null);
+        QueryCounter.Counter counter = QueryCounter.measure(() -> mockMvc.perform(request)
+                .andExpect(status().is2xxSuccessful()));
+        assertThat(counter.getRoundTrips())
+                .as("%s %s: %s", mockRequest.getMethod(), mockRequest.getRequestURI(), counter)
+                .isLessThanOrEqualTo(maxRoundTrips);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:user-controller;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+public class UserControllerTest {
+    private static final String USER_JSON = """
+            {"email":"%1$s@example.com","login":"%1$s","name":"%1$s","birthday":"1990-01-01"}""";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Друзья пользователя: 304 на текущий ETag, ответ 404 не получает ETag")
+    void shouldTagFriendsOnlyForExistingUser() throws Exception {
+        long id = createUser("tagged");
+
+        MockHttpServletResponse first = mockMvc.perform(get("/users/" + id + "/friends")).andReturn().getResponse();
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(etag).isNotBlank();
+
+        MockHttpServletResponse notModified = mockMvc.perform(get("/users/" + id + "/friends")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn().getResponse();
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        assertThat(notModified.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+
+        MockHttpServletResponse missing = mockMvc.perform(get("/users/" + (id + 1) + "/friends"))
+                .andReturn().getResponse();
+        assertThat(missing.getStatus()).isEqualTo(404);
+        assertThat(missing.getHeader(HttpHeaders.ETAG)).isNull();
+    }
+
+    private long createUser(String login) throws Exception {
+        String body = mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+                        .content(USER_JSON.formatted(login)))
+                .andExpect(status().is2xxSuccessful())
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) JsonPath.read(body, "$.id")).longValue();
+    }
+}
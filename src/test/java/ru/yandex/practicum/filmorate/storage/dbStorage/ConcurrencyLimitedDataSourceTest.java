@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage.dbStorage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.dal.limit.ConcurrencyLimitedDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ConcurrencyLimitedDataSourceTest {
+
+    @Test
+    @DisplayName("Ограничение числа одновременно выданных соединений")
+    void shouldLimitConcurrentConnections() throws SQLException {
+        ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:concurrency-limit", "sa", ""), 1, Duration.ofMillis(50));
+
+        Connection first = dataSource.getConnection();
+        assertThat(dataSource.getAvailablePermits()).isZero();
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+        first.close();
+        first.close();
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+        try (Connection second = dataSource.getConnection()) {
+            assertThat(second.isValid(1)).isTrue();
+        }
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+    }
+}
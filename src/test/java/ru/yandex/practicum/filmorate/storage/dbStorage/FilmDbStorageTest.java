@@ -5,20 +5,34 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.like.LikeRepository;
+import ru.yandex.practicum.filmorate.dal.like.LikeRowMapper;
+import ru.yandex.practicum.filmorate.dal.metrics.QueryMetrics;
 import ru.yandex.practicum.filmorate.dal.user.UserRepository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.QueryStats;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:filmorate-test;DB_CLOSE_DELAY=-1")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 public class FilmDbStorageTest {
 
@@ -28,6 +42,48 @@ public class FilmDbStorageTest {
     @Autowired
     private UserRepository userDbStorage;
 
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private EntityVersions versions;
+
+    @Test
+    @DisplayName("Изменение жанра и рейтинга найденного фильма не меняет справочники")
+    void shouldNotShareReferenceDataBetweenFilms() {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Genre genre = new Genre();
+        genre.setId(1L);
+        Film film = new Film();
+        film.setName("Shared references");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(genre)));
+        long id = filmDbStorage.create(film).getId();
+
+        Film found = filmDbStorage.findFilmById(id).orElseThrow();
+        String mpaName = found.getMpa().getName();
+        String genreName = found.getGenres().iterator().next().getName();
+        found.getMpa().setName("changed");
+        found.getGenres().iterator().next().setName("changed");
+
+        Film again = filmDbStorage.findFilmById(id).orElseThrow();
+        assertThat(again.getMpa().getName()).isEqualTo(mpaName).isNotEqualTo("changed");
+        assertThat(again.getGenres()).extracting(Genre::getName).containsExactly(genreName);
+        assertThat(filmDbStorage.findAll()).filteredOn(loaded -> loaded.getId() == id)
+                .singleElement()
+                .satisfies(loaded -> assertThat(loaded.getMpa().getName()).isEqualTo(mpaName));
+    }
+
     @Test
     @DisplayName("Создание и получение фильма по ID")
     void shouldCreateAndFindFilmById() {
@@ -166,4 +222,421 @@ public class FilmDbStorageTest {
         assertThat(filmDbStorage.checkId(savedFilm.getId())).isTrue();
         assertThat(filmDbStorage.checkId(99999L)).isFalse();
     }
+
+    @Test
+    @DisplayName("Списки фильмов содержат рейтинг и жанры")
+    void shouldFillGenresAndRatingInFilmLists() {
+        Mpa mpa = new Mpa();
+        mpa.setId(3L);
+        Genre comedy = new Genre();
+        comedy.setId(1L);
+        Genre drama = new Genre();
+        drama.setId(2L);
+
+        Film film = new Film();
+        film.setName("Film With Genres");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2015, 1, 1));
+        film.setDuration(90);
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(drama, comedy)));
+        Film savedFilm = filmDbStorage.create(film);
+
+        Film fromAll = filmDbStorage.findAll().stream()
+                .filter(f -> f.getId().equals(savedFilm.getId()))
+                .findFirst()
+                .orElseThrow();
+        Film fromPopular = filmDbStorage.findPopular(Integer.MAX_VALUE).stream()
+                .filter(f -> f.getId().equals(savedFilm.getId()))
+                .findFirst()
+                .orElseThrow();
+
+        for (Film found : List.of(fromAll, fromPopular)) {
+            assertThat(found.getMpa().getName()).isEqualTo("PG-13");
+            assertThat(found.getGenres()).extracting(Genre::getName).containsExactly("Комедия", "Драма");
+        }
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы упорядочены по количеству лайков")
+    void shouldOrderPopularFilmsByLikes() {
+        User first = new User();
+        first.setEmail("popular1@example.com");
+        first.setLogin("popular1");
+        first.setName("Popular One");
+        first.setBirthday(LocalDate.of(1990, 1, 1));
+        userDbStorage.create(first);
+
+        User second = new User();
+        second.setEmail("popular2@example.com");
+        second.setLogin("popular2");
+        second.setName("Popular Two");
+        second.setBirthday(LocalDate.of(1990, 1, 1));
+        userDbStorage.create(second);
+
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film lessPopular = new Film();
+        lessPopular.setName("Less Popular");
+        lessPopular.setDescription("Description");
+        lessPopular.setReleaseDate(LocalDate.of(2001, 1, 1));
+        lessPopular.setDuration(100);
+        lessPopular.setMpa(mpa);
+        filmDbStorage.create(lessPopular);
+
+        Film mostPopular = new Film();
+        mostPopular.setName("Most Popular");
+        mostPopular.setDescription("Description");
+        mostPopular.setReleaseDate(LocalDate.of(2002, 1, 1));
+        mostPopular.setDuration(100);
+        mostPopular.setMpa(mpa);
+        filmDbStorage.create(mostPopular);
+
+        filmDbStorage.putLike(first.getId(), mostPopular.getId());
+        filmDbStorage.putLike(second.getId(), mostPopular.getId());
+        filmDbStorage.putLike(first.getId(), lessPopular.getId());
+        filmDbStorage.putLike(second.getId(), lessPopular.getId());
+        filmDbStorage.deleteLike(second.getId(), lessPopular.getId());
+        filmDbStorage.deleteLike(second.getId(), lessPopular.getId());
+
+        assertThat(filmDbStorage.findPopular(2)).extracting(Film::getId)
+                .containsExactly(mostPopular.getId(), lessPopular.getId());
+    }
+
+    @Test
+    @DisplayName("Выгрузка всех фильмов с жанрами и рейтингом")
+    void shouldExportAllFilmsWithGenresAndRating() {
+        Mpa mpa = new Mpa();
+        mpa.setId(4L);
+        Genre thriller = new Genre();
+        thriller.setId(4L);
+        Genre comedy = new Genre();
+        comedy.setId(1L);
+
+        Film film = new Film();
+        film.setName("Exported Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2018, 1, 1));
+        film.setDuration(110);
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(thriller, comedy)));
+        Film savedFilm = filmDbStorage.create(film);
+
+        List<Film> exported = new ArrayList<>();
+        filmDbStorage.exportAll(exported::add);
+
+        // Каждый фильм выгружается один раз, несмотря на несколько строк с жанрами
+        assertThat(exported).extracting(Film::getId).doesNotHaveDuplicates()
+                .containsAll(filmDbStorage.findAll().stream().map(Film::getId).toList());
+        Film exportedFilm = exported.stream()
+                .filter(f -> f.getId().equals(savedFilm.getId()))
+                .findFirst()
+                .orElseThrow();
+        assertThat(exportedFilm.getMpa().getName()).isEqualTo("R");
+        assertThat(exportedFilm.getGenres()).extracting(Genre::getName).containsExactly("Комедия", "Триллер");
+    }
+
+    @Test
+    @DisplayName("Пакетное добавление фильмов с жанрами")
+    void shouldCreateFilmsInBatch() {
+        Mpa mpa = new Mpa();
+        mpa.setId(2L);
+        Genre drama = new Genre();
+        drama.setId(2L);
+
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Batch Film " + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2020, 1, 1));
+            film.setDuration(90 + i);
+            film.setMpa(mpa);
+            if (i > 0) {
+                film.setGenres(new LinkedHashSet<>(List.of(drama)));
+            }
+            films.add(film);
+        }
+
+        List<Long> ids = filmDbStorage.createAll(films);
+
+        assertThat(ids).hasSize(3).doesNotHaveDuplicates();
+        Film last = filmDbStorage.findFilmById(ids.get(2)).orElseThrow();
+        assertThat(last.getName()).isEqualTo("Batch Film 2");
+        assertThat(last.getMpa().getName()).isEqualTo("PG");
+        assertThat(last.getGenres()).extracting(Genre::getName).containsExactly("Драма");
+        assertThat(filmDbStorage.findFilmById(ids.get(0)).orElseThrow().getGenres()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Жанры заполняются для списка фильмов больше одной пачки IN (...)")
+    void shouldFillGenresForMoreFilmsThanOneBatch() {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Genre comedy = new Genre();
+        comedy.setId(1L);
+
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            Film film = new Film();
+            film.setName("Chunked Film " + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2020, 1, 1));
+            film.setDuration(90);
+            film.setMpa(mpa);
+            film.setGenres(new LinkedHashSet<>(List.of(comedy)));
+            films.add(film);
+        }
+        List<Long> ids = filmDbStorage.createAll(films);
+
+        List<Film> created = filmDbStorage.findAll().stream()
+                .filter(film -> ids.contains(film.getId()))
+                .toList();
+        assertThat(created).hasSize(ids.size())
+                .allSatisfy(film -> assertThat(film.getGenres()).extracting(Genre::getName).containsExactly("Комедия"));
+    }
+
+    @Test
+    @DisplayName("Асинхронное получение фильма с жанрами и рейтингом")
+    void shouldFindFilmByIdAsync() {
+        Mpa mpa = new Mpa();
+        mpa.setId(4L);
+        Genre comedy = new Genre();
+        comedy.setId(1L);
+        Genre thriller = new Genre();
+        thriller.setId(4L);
+        Film film = new Film();
+        film.setName("Async Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2015, 5, 5));
+        film.setDuration(100);
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(thriller, comedy)));
+        Long filmId = filmDbStorage.create(film).getId();
+
+        Film found = filmDbStorage.findFilmByIdAsync(filmId).join().orElseThrow();
+
+        assertThat(found.getName()).isEqualTo("Async Film");
+        assertThat(found.getMpa().getName()).isEqualTo("R");
+        assertThat(found.getGenres()).extracting(Genre::getName).containsExactly("Комедия", "Триллер");
+        assertThat(filmDbStorage.findFilmByIdAsync(Long.MAX_VALUE).join()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Версии фильма и популярных фильмов меняются только при записи")
+    void shouldChangeVersionTagsOnWrites() {
+        User user = new User();
+        user.setEmail("tagged@example.com");
+        user.setLogin("tagged");
+        user.setName("Tagged");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        Long userId = userDbStorage.create(user).getId();
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setName("Tagged Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2001, 1, 1));
+        film.setDuration(100);
+        film.setMpa(mpa);
+        Long filmId = filmDbStorage.create(film).getId();
+
+        String filmTag = versions.filmTag(filmId);
+        String popularTag = versions.popularTag();
+        filmDbStorage.findFilmById(filmId);
+        filmDbStorage.findPopular(10);
+        assertThat(versions.filmTag(filmId)).isEqualTo(filmTag);
+        assertThat(versions.popularTag()).isEqualTo(popularTag);
+
+        filmDbStorage.putLike(userId, filmId);
+        assertThat(versions.popularTag()).isNotEqualTo(popularTag);
+        assertThat(versions.filmTag(filmId)).isEqualTo(filmTag);
+
+        film.setName("Tagged Film 2");
+        filmDbStorage.update(film);
+        assertThat(versions.filmTag(filmId)).isNotEqualTo(filmTag);
+        assertThat(versions.filmTag(filmId)).startsWith("\"").endsWith("\"");
+    }
+
+    @Test
+    @DisplayName("Отложенные лайки видны в рейтинге до записи в базу")
+    void shouldCountBufferedLikesBeforeFlush() throws InterruptedException {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User user = new User();
+            user.setEmail("buffered" + i + "@example.com");
+            user.setLogin("buffered" + i);
+            user.setName("Buffered " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userIds.add(userDbStorage.create(user).getId());
+        }
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setName("Buffered Likes");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2003, 1, 1));
+        film.setDuration(100);
+        film.setMpa(mpa);
+        Long filmId = filmDbStorage.create(film).getId();
+
+        // Интервал записи большой, чтобы события гарантированно оставались в буфере до flushLikes()
+        LikeRepository buffered = new LikeRepository(jdbc, new LikeRowMapper(), transactionTemplate, versions,
+                Optional.empty(), 100, true, 1000, Duration.ofHours(1));
+        buffered.loadLeaderboard();
+        for (int i = 0; i < 3; i++) {
+            buffered.putLike(userIds.get(i), filmId);
+        }
+        buffered.putLike(userIds.get(0), filmId);
+        buffered.putLike(userIds.get(3), filmId);
+        buffered.deleteLike(userIds.get(3), filmId);
+
+        String countQuery = "SELECT COUNT(*) FROM likes WHERE film_id = ?";
+        assertThat(jdbc.queryForObject(countQuery, Integer.class, filmId)).isZero();
+        assertThat(buffered.findPopularFilmIds(1)).containsExactly(filmId);
+
+        buffered.drainWriteBuffer();
+
+        assertThat(jdbc.queryForObject(countQuery, Integer.class, filmId)).isEqualTo(3);
+        assertThat(buffered.findPopularFilmIds(1)).containsExactly(filmId);
+    }
+
+    @Test
+    @DisplayName("Рекомендации фильмов по лайкам похожих пользователей")
+    void shouldRecommendFilmsLikedBySimilarUsers() {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("recommend" + i + "@example.com");
+            user.setLogin("recommend" + i);
+            user.setName("Recommend " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userIds.add(userDbStorage.create(user).getId());
+        }
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Film film = new Film();
+            film.setName("Recommended " + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2004, 1, 1));
+            film.setDuration(100);
+            film.setMpa(mpa);
+            filmIds.add(filmDbStorage.create(film).getId());
+        }
+        filmDbStorage.putLike(userIds.get(0), filmIds.get(0));
+        filmDbStorage.putLike(userIds.get(0), filmIds.get(1));
+        filmDbStorage.putLike(userIds.get(1), filmIds.get(0));
+        filmDbStorage.putLike(userIds.get(1), filmIds.get(1));
+        filmDbStorage.putLike(userIds.get(1), filmIds.get(2));
+        filmDbStorage.putLike(userIds.get(2), filmIds.get(3));
+
+        // Второй пользователь похож на первого, третий не пересекается с ним ни по одному фильму
+        assertThat(filmDbStorage.findRecommendations(userIds.get(0), 10)).extracting(Film::getId)
+                .containsExactly(filmIds.get(2));
+        assertThat(filmDbStorage.findRecommendations(userIds.get(2), 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Поиск фильмов по словам и префиксу")
+    void shouldSearchFilmsByWordsAndPrefix() {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film byName = new Film();
+        byName.setName("Ёжик в тумане");
+        byName.setDescription("Мультфильм о дружбе");
+        byName.setReleaseDate(LocalDate.of(1975, 1, 1));
+        byName.setDuration(10);
+        byName.setMpa(mpa);
+        filmDbStorage.create(byName);
+
+        Film byDescription = new Film();
+        byDescription.setName("Сказка");
+        byDescription.setDescription("Ежик ищет друга в тумане");
+        byDescription.setReleaseDate(LocalDate.of(1980, 1, 1));
+        byDescription.setDuration(20);
+        byDescription.setMpa(mpa);
+        filmDbStorage.create(byDescription);
+
+        // Совпадение в названии весит больше, чем в описании, «ё» и «е» не различаются
+        assertThat(filmDbStorage.search("ежик", 10)).extracting(Film::getId)
+                .containsExactly(byName.getId(), byDescription.getId());
+        assertThat(filmDbStorage.search("мульт*", 10)).extracting(Film::getId)
+                .containsExactly(byName.getId());
+
+        byDescription.setDescription("История без ежей");
+        filmDbStorage.update(byDescription);
+        assertThat(filmDbStorage.search("ТУМАНЕ", 10)).extracting(Film::getId)
+                .containsExactly(byName.getId());
+    }
+
+    @Test
+    @DisplayName("Статистика SQL-запросов по именам констант")
+    void shouldRecordQueryMetricsByConstantName() {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setName("Measured Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2006, 1, 1));
+        film.setDuration(100);
+        film.setMpa(mpa);
+        Long filmId = filmDbStorage.create(film).getId();
+
+        filmDbStorage.findFilmById(filmId);
+        filmDbStorage.findFilmById(filmId);
+
+        QueryStats findById = queryMetrics.report().getStatements().stream()
+                .filter(stats -> stats.getName().equals("FilmRepository.FIND_BY_ID_QUERY"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(findById.getCalls()).isGreaterThanOrEqualTo(2);
+        assertThat(findById.getRows()).isGreaterThanOrEqualTo(2);
+        assertThat(queryMetrics.report().getConnectionWait().getCalls()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Повторный лайк и снятие лайка идемпотентны, неизвестный id даёт NotFoundException")
+    void shouldPutAndDeleteLikesIdempotently() {
+        User user = new User();
+        user.setEmail("idempotent@example.com");
+        user.setLogin("idempotent");
+        user.setName("Idempotent");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        userDbStorage.create(user);
+
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setName("Idempotent Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(mpa);
+        filmDbStorage.create(film);
+
+        filmDbStorage.putLike(user.getId(), film.getId());
+        String popularTag = versions.popularTag();
+        // Повтор не меняет ни таблицу, ни рейтинг популярных фильмов
+        filmDbStorage.putLike(user.getId(), film.getId());
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class, film.getId()))
+                .isEqualTo(1);
+        assertThat(versions.popularTag()).isEqualTo(popularTag);
+
+        assertThatThrownBy(() -> filmDbStorage.putLike(-1L, film.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Пользователь с id = -1 не найден");
+        assertThatThrownBy(() -> filmDbStorage.putLike(user.getId(), -1L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Фильм с id = -1 не найден");
+
+        filmDbStorage.deleteLike(user.getId(), film.getId());
+        filmDbStorage.deleteLike(user.getId(), film.getId());
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class, film.getId()))
+                .isZero();
+        assertThatThrownBy(() -> filmDbStorage.deleteLike(-1L, film.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Пользователь с id = -1 не найден");
+    }
 }
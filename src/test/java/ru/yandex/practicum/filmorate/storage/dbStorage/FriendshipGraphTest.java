@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage.dbStorage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipGraph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FriendshipGraphTest {
+
+    @Test
+    @DisplayName("Во время перезагрузки граф читается целиком, изменения дружбы при загрузке не теряются")
+    void shouldPublishReloadedGraphAtOnce() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.load(edges -> {
+            edges.accept(1, 2);
+            edges.accept(2, 3);
+            edges.accept(2, 4);
+        });
+
+        graph.load(edges -> {
+            edges.accept(1, 2);
+            assertThat(graph.findFriends(2)).containsExactly(3L, 4L);
+            assertThat(graph.suggestFriends(1, 10)).containsExactly(3L, 4L);
+            // Дружба изменилась, пока читалась база, и прочитанные данные этого не содержат
+            graph.removeFriend(2, 3);
+            graph.addFriend(2, 5);
+            assertThat(graph.findFriends(2)).containsExactly(4L, 5L);
+            edges.accept(2, 3);
+            edges.accept(2, 4);
+        });
+
+        assertThat(graph.findFriends(2)).containsExactly(4L, 5L);
+        assertThat(graph.suggestFriends(1, 10)).containsExactly(4L, 5L);
+        assertThat(graph.findCommonFriends(1, 1)).containsExactly(2L);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage.dbStorage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.like.LikeMatrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LikeMatrixTest {
+
+    @Test
+    @DisplayName("Во время перезагрузки рекомендации строятся по старой матрице, изменения при загрузке не теряются")
+    void shouldPublishReloadedMatrixAtOnce() {
+        LikeMatrix matrix = new LikeMatrix();
+        matrix.load(likes -> {
+            likes.accept(1, 10);
+            likes.accept(2, 10);
+            likes.accept(2, 20);
+        });
+
+        matrix.load(likes -> {
+            likes.accept(1, 10);
+            likes.accept(2, 10);
+            assertThat(matrix.recommendFilms(1, 10)).containsExactly(20L);
+            // Лайки изменились, пока читалась база, и прочитанные данные их не содержат
+            matrix.removeLike(2, 20);
+            matrix.addLike(2, 30);
+            assertThat(matrix.recommendFilms(1, 10)).containsExactly(30L);
+            likes.accept(2, 20);
+        });
+
+        assertThat(matrix.recommendFilms(1, 10)).containsExactly(30L);
+        assertThat(matrix.recommendFilms(2, 10)).isEmpty();
+    }
+}
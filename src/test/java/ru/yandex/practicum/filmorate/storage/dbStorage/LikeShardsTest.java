@@ -0,0 +1,241 @@
+package ru.yandex.practicum.filmorate.storage.dbStorage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.like.LikeRepository;
+import ru.yandex.practicum.filmorate.dal.like.LikeShards;
+import ru.yandex.practicum.filmorate.dal.metrics.QueryMetrics;
+import ru.yandex.practicum.filmorate.dal.user.UserRepository;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:likes-sharding;DB_CLOSE_DELAY=-1",
+        "filmorate.likes.shards.count=3",
+        "filmorate.likes.shards.url=" + LikeShardsTest.SHARD_URL
+})
+public class LikeShardsTest {
+    static final String SHARD_URL = "jdbc:h2:mem:likes-shard-%d;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private LikeRepository likeRepository;
+
+    @Autowired
+    private LikeShards likeShards;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectProvider<QueryMetrics> metrics;
+
+    @Test
+    @DisplayName("Лайки лежат в шарде своего фильма, популярные фильмы собираются со всех шардов")
+    void shouldRouteLikesByFilmAndMergePopularFilms() {
+        List<Long> userIds = createUsers("routing", 4);
+        List<Long> filmIds = createFilms("routing", 8);
+        for (int i = 0; i < filmIds.size(); i++) {
+            for (int u = 0; u < i % userIds.size() + 1; u++) {
+                likeRepository.putLike(userIds.get(u), filmIds.get(i));
+            }
+        }
+        likeRepository.putLike(userIds.get(0), filmIds.get(0));
+        likeRepository.deleteLike(userIds.get(1), filmIds.get(1));
+        likeRepository.deleteLike(userIds.get(1), filmIds.get(1));
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes", Integer.class)).isZero();
+        assertThat(shardFilmIds(3)).allSatisfy((shard, films) ->
+                assertThat(films).allMatch(filmId -> LikeShards.shardOf(filmId, 3) == shard));
+        assertThat(shardFilmIds(3).values().stream().filter(films -> !films.isEmpty())).hasSizeGreaterThan(1);
+        assertThat(countLikes(filmIds.get(0))).isEqualTo(1);
+        assertThat(countLikes(filmIds.get(1))).isEqualTo(1);
+
+        assertThat(likeRepository.findPopularRanks(100)).extracting(rank -> rank.filmId())
+                .containsExactlyElementsOf(likeRepository.findPopularFilmIds(100));
+        likeRepository.loadLeaderboard();
+        assertThat(likeRepository.findPopularRanks(100)).extracting(rank -> rank.filmId())
+                .containsExactlyElementsOf(likeRepository.findPopularFilmIds(100));
+
+        assertThatThrownBy(() -> likeRepository.putLike(userIds.get(0), -1L)).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> likeRepository.putLike(-1L, filmIds.get(0))).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> likeRepository.deleteLike(userIds.get(0), -1L)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Перераспределение при запуске переносит лайки, только если число шардов изменилось")
+    void shouldRebalanceLikesWhenShardCountChanges() {
+        List<Long> userIds = createUsers("rebalance", 3);
+        List<Long> filmIds = createFilms("rebalance", 20);
+        for (Long filmId : filmIds) {
+            userIds.forEach(userId -> likeRepository.putLike(userId, filmId));
+        }
+        long likes = totalLikes(3);
+        assertThat(storedShardCount()).isEqualTo(3);
+
+        try (Resharded grown = new Resharded(4)) {
+            assertThat(grown.shards().rebalance(3)).isZero();
+        }
+        assertThat(storedShardCount()).isEqualTo(4);
+        assertThat(totalLikes(4)).isEqualTo(likes);
+        assertThat(shardFilmIds(4)).allSatisfy((shard, films) ->
+                assertThat(films).allMatch(filmId -> LikeShards.shardOf(filmId, 4) == shard));
+        assertThat(shard(3).queryForObject("SELECT COUNT(*) FROM likes", Long.class)).isPositive();
+
+        // Перезапуск с тем же числом шардов ничего не переносит, лишние шарды больше не читаются
+        long misplaced = LongStream.iterate(1_000_000, id -> id + 1)
+                .filter(id -> LikeShards.shardOf(id, 4) != 3)
+                .findFirst()
+                .orElseThrow();
+        shard(3).update("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", userIds.get(0), misplaced);
+        try (Resharded same = new Resharded(4)) {
+            assertThat(shard(3).queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class,
+                    misplaced)).isOne();
+        }
+        shard(3).update("DELETE FROM likes WHERE film_id = ?", misplaced);
+
+        try (Resharded shrunk = new Resharded(2)) {
+            assertThat(shrunk.shards().rebalance(4)).isZero();
+        }
+        assertThat(storedShardCount()).isEqualTo(2);
+        assertThat(totalLikes(2)).isEqualTo(likes);
+        assertThat(totalLikes(4)).isEqualTo(likes);
+        assertThat(shardFilmIds(2)).allSatisfy((shard, films) ->
+                assertThat(films).allMatch(filmId -> LikeShards.shardOf(filmId, 2) == shard));
+
+        try (Resharded restored = new Resharded(3)) {
+            assertThat(restored.shards().size()).isEqualTo(3);
+        }
+        assertThat(storedShardCount()).isEqualTo(3);
+        assertThat(totalLikes(3)).isEqualTo(likes);
+    }
+
+    @Test
+    @DisplayName("При включении шардов лайки из основной базы переносятся в шарды")
+    void shouldImportLikesFromPrimaryWhenShardsAreEnabled() {
+        List<Long> userIds = createUsers("import", 2);
+        List<Long> filmIds = createFilms("import", 6);
+        long likesBefore = totalLikes(3);
+        // Лайки, записанные в основную базу, пока шардов не было
+        for (Long filmId : filmIds) {
+            userIds.forEach(userId -> jdbc.update("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", userId, filmId));
+        }
+
+        try (Resharded enabled = new Resharded(3)) {
+            assertThat(enabled.shards().importFromPrimary()).isZero();
+        }
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes", Integer.class)).isZero();
+        assertThat(totalLikes(3) - likesBefore).isEqualTo((long) filmIds.size() * userIds.size());
+        filmIds.forEach(filmId -> assertThat(countLikes(filmId)).isEqualTo(userIds.size()));
+        assertThat(shardFilmIds(3)).allSatisfy((shard, films) ->
+                assertThat(films).allMatch(filmId -> LikeShards.shardOf(filmId, 3) == shard));
+
+        // При запуске лидерборд загружается уже после переноса
+        likeRepository.loadLeaderboard();
+        assertThat(likeRepository.findPopularRanks(100)).extracting(rank -> rank.filmId())
+                .containsExactlyElementsOf(likeRepository.findPopularFilmIds(100));
+    }
+
+    private Map<Integer, List<Long>> shardFilmIds(int count) {
+        Map<Integer, List<Long>> filmsByShard = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            filmsByShard.put(i, shard(i).queryForList("SELECT DISTINCT film_id FROM likes", Long.class));
+        }
+        return filmsByShard;
+    }
+
+    private long totalLikes(int count) {
+        long likes = 0;
+        for (int i = 0; i < count; i++) {
+            likes += shard(i).queryForObject("SELECT COUNT(*) FROM likes", Long.class);
+        }
+        return likes;
+    }
+
+    private int countLikes(long filmId) {
+        return likeShards.shardFor(filmId).queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?",
+                Integer.class, filmId);
+    }
+
+    private static int storedShardCount() {
+        return shard(0).queryForObject("SELECT shard_count FROM likes_layout", Integer.class);
+    }
+
+    private static JdbcTemplate shard(int index) {
+        return new JdbcTemplate(new DriverManagerDataSource(SHARD_URL.formatted(index), "sa", ""));
+    }
+
+    private List<Long> createUsers(String prefix, int count) {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setEmail(prefix + i + "@example.com");
+            user.setLogin(prefix + i);
+            user.setName(prefix + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userIds.add(userRepository.create(user).getId());
+        }
+        return userIds;
+    }
+
+    private List<Long> createFilms(String prefix, int count) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName(prefix + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            film.setMpa(mpa);
+            filmIds.add(filmRepository.create(film).getId());
+        }
+        return filmIds;
+    }
+
+    /**
+     * Второй набор шардов поверх тех же баз, как при перезапуске приложения с другим числом шардов.
+     */
+    private final class Resharded implements AutoCloseable {
+        private final LikeShards shards;
+
+        Resharded(int count) {
+            shards = new LikeShards(jdbc, count, SHARD_URL, 2, false, metrics);
+            shards.init();
+        }
+
+        LikeShards shards() {
+            return shards;
+        }
+
+        @Override
+        public void close() {
+            shards.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.dbStorage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.like.PopularityLeaderboard;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PopularityLeaderboardTest {
+
+    @Test
+    @DisplayName("Во время перезагрузки рейтинг читается целиком, добавленные при загрузке фильмы не теряются")
+    void shouldPublishReloadedRankingAtOnce() {
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+        leaderboard.load(() -> Map.of(1L, 3L, 2L, 2L, 3L, 1L));
+
+        leaderboard.load(() -> {
+            assertThat(leaderboard.findTop(10)).containsExactly(1L, 2L, 3L);
+            // Фильм создан, пока читалась база, и в прочитанные данные не попал
+            leaderboard.addFilm(4L);
+            assertThat(leaderboard.findTop(10)).containsExactly(1L, 2L, 3L, 4L);
+            return Map.of(1L, 3L, 2L, 1L, 3L, 1L);
+        });
+
+        assertThat(leaderboard.findTopRanks(10)).containsExactly(
+                new PopularityLeaderboard.Rank(1L, 3L),
+                new PopularityLeaderboard.Rank(2L, 1L),
+                new PopularityLeaderboard.Rank(3L, 1L),
+                new PopularityLeaderboard.Rank(4L, 0L));
+    }
+
+    @Test
+    @DisplayName("Лайк, записываемый во время перезагрузки, ждёт её окончания и учитывается один раз")
+    void shouldCountLikeWrittenDuringReloadOnce() throws Exception {
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+        Map<Long, Long> database = new ConcurrentHashMap<>(Map.of(1L, 1L, 2L, 2L));
+        leaderboard.load(() -> new HashMap<>(database));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicReference<Future<?>> like = new AtomicReference<>();
+        try {
+            leaderboard.load(() -> {
+                // Лайк приходит после начала загрузки, но до чтения базы
+                like.set(executor.submit(() -> leaderboard.write(() -> {
+                    database.merge(1L, 1L, Long::sum);
+                    leaderboard.increment(1L);
+                    return null;
+                })));
+                assertThatThrownBy(() -> like.get().get(200, TimeUnit.MILLISECONDS))
+                        .isInstanceOf(TimeoutException.class);
+                return new HashMap<>(database);
+            });
+            like.get().get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(database).containsEntry(1L, 2L);
+        assertThat(leaderboard.findTopRanks(10)).containsExactly(
+                new PopularityLeaderboard.Rank(1L, 2L),
+                new PopularityLeaderboard.Rank(2L, 2L));
+    }
+}
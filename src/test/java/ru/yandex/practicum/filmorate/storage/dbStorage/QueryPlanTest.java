@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage.dbStorage;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.dal.film.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.friendship.FriendshipRepository;
+import ru.yandex.practicum.filmorate.dal.like.LikeRepository;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:query-plans;DB_CLOSE_DELAY=-1")
+public class QueryPlanTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Test
+    @DisplayName("Запросы на каждый вызов API ищут строки по индексу, а не полным чтением таблиц")
+    void shouldUseIndexForHotQueries() {
+        List<String> queries = List.of(
+                query(LikeRepository.class, "MERGE_QUERY"),
+                query(LikeRepository.class, "DELETE_QUERY"),
+                query(LikeRepository.class, "COUNT_REFERENCES_QUERY"),
+                query(FriendshipRepository.class, "MERGE_QUERY_FOR_ADD_FRIEND"),
+                query(FriendshipRepository.class, "DELETE_QUERY"),
+                query(FriendshipRepository.class, "COUNT_USERS_QUERY"),
+                query(FriendshipRepository.class, "FIND_USERS_BY_IDS_QUERY"),
+                query(FilmRepository.class, "FIND_PAGE_QUERY"),
+                query(FilmRepository.class, "FIND_BY_ID_QUERY"),
+                query(FilmRepository.class, "FIND_BY_IDS_QUERY"),
+                query(FilmRepository.class, "CHECK_FILM_ID"),
+                query(FilmRepository.class, "UPDATE_FILM_QUERY"),
+                query(FilmRepository.class, "FIND_GENRES_BY_FILM_QUERY"),
+                query(FilmRepository.class, "FIND_GENRES_BY_FILMS_QUERY"),
+                "DELETE FROM film_genre WHERE film_id = ?");
+
+        // Индекс с условием в плане H2 выглядит как /* PUBLIC.ИМЯ_ИНДЕКСА: СТОЛБЕЦ = ?1 */
+        queries.forEach(query -> assertThat(explain(query)).as(query)
+                .doesNotContain("tableScan")
+                .containsPattern("/\\* PUBLIC\\.\\w+: "));
+        assertThat(explain("SELECT user_id FROM friendship WHERE friend_id = ?"))
+                .contains("FRIENDSHIP_FRIEND_IDX: FRIEND_ID = ?1");
+    }
+
+    @Test
+    @DisplayName("Подсчёт лайков и выгрузка фильмов с жанрами соединяют таблицы по индексам")
+    void shouldJoinByIndexes() {
+        assertThat(explain(query(LikeRepository.class, "COUNT_LIKES_BY_FILM_QUERY")))
+                .contains("LIKES_FILM_IDX: FILM_ID = F.ID")
+                .doesNotContain("tableScan");
+        assertThat(explain(query(LikeRepository.class, "FIND_POPULAR_FILMS_QUERY")))
+                .contains("LIKES_FILM_IDX: FILM_ID = F.ID")
+                .doesNotContain("tableScan");
+        assertThat(explain(query(FilmRepository.class, "EXPORT_QUERY")))
+                .contains("FILM_ID = F.ID")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Миграции обновляют базу прежнего schema.sql на месте и убирают дубликаты жанров")
+    void shouldMigrateExistingDatabaseInPlace() {
+        assertThat(flyway.info().current().getVersion().getVersion()).isEqualTo("3");
+
+        // База в том виде, в каком её оставлял прежний schema.sql: безымянные внешние ключи, нет истории Flyway
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:query-plans-upgrade;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/legacy/schema.sql"),
+                new ClassPathResource("db/legacy/data.sql")).execute(dataSource);
+        JdbcTemplate old = new JdbcTemplate(dataSource);
+        old.update("""
+                INSERT INTO users (email, login, name, birthday)
+                VALUES ('a@example.com', 'a', 'a', DATE '1990-01-01'), ('b@example.com', 'b', 'b', DATE '1990-01-01')""");
+        old.update("""
+                INSERT INTO films (name, description, release_date, duration, rating_id)
+                VALUES ('film', 'description', DATE '2000-01-01', 100, 1)""");
+        old.update("INSERT INTO film_genre (film_id, genre_id) VALUES (1, 1), (1, 1), (1, 2)");
+        old.update("INSERT INTO likes (user_id, film_id) VALUES (1, 1), (2, 1)");
+        old.update("INSERT INTO friendship (user_id, friend_id) VALUES (1, 2)");
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("2")
+                .load()
+                .migrate();
+
+        assertThat(old.queryForList("SELECT genre_id FROM film_genre WHERE film_id = 1 ORDER BY genre_id",
+                Long.class)).containsExactly(1L, 2L);
+        assertThat(old.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 1", Integer.class)).isEqualTo(2);
+        assertThat(old.queryForObject("SELECT COUNT(*) FROM friendship", Integer.class)).isEqualTo(1);
+        assertThat(old.queryForList("""
+                SELECT LOWER(constraint_name) FROM information_schema.table_constraints
+                WHERE constraint_type = 'FOREIGN KEY' AND table_name IN ('LIKES', 'FRIENDSHIP')""", String.class))
+                .containsExactlyInAnyOrder("likes_user_fk", "likes_film_fk", "friendship_user_fk", "friendship_friend_fk");
+        assertThat(explainOn(old, query(LikeRepository.class, "COUNT_LIKES_BY_FILM_QUERY")))
+                .contains("LIKES_FILM_IDX: FILM_ID = F.ID");
+    }
+
+    /**
+     * План запроса с id = 1 на месте каждого параметра; списки IN (%s) разворачиваются в два параметра.
+     */
+    private String explain(String query) {
+        return explainOn(jdbc, query);
+    }
+
+    private static String explainOn(JdbcTemplate jdbc, String query) {
+        String sql = query.formatted("?, ?", "?, ?");
+        Object[] params = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+        Arrays.fill(params, 1L);
+        return jdbc.queryForObject("EXPLAIN " + sql, String.class, params);
+    }
+
+    private static String query(Class<?> repository, String name) {
+        return (String) ReflectionTestUtils.getField(repository, name);
+    }
+}
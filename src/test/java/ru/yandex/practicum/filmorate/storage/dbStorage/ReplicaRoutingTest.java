@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.storage.dbStorage;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.replica.Replica;
+import ru.yandex.practicum.filmorate.dal.replica.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.dal.replica.ReplicatingDataSource;
+import ru.yandex.practicum.filmorate.dal.user.UserRepository;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica-routing;DB_CLOSE_DELAY=-1",
+        "filmorate.jdbc.replicas=2",
+        "filmorate.jdbc.replica.lag=PT1S"
+})
+@AutoConfigureMockMvc
+public class ReplicaRoutingTest {
+    private static final String FILM_JSON = """
+            {%s"name":"%s","description":"Description","releaseDate":"2000-01-01","duration":100,"mpa":{"id":1}}""";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityVersions versions;
+
+    @Test
+    @DisplayName("Чтение после записи видит её сразу, другие потоки читают с реплик после репликации")
+    void shouldReadOwnWritesAndReplicateToReplicas() throws Exception {
+        User user = userRepository.create(newUser("replica"));
+        long afterId = user.getId() - 1;
+
+        // Реплики отстают на секунду: поток, который писал, читает с основной базы
+        assertThat(userRepository.findPage(afterId, 1)).extracting(User::getId).containsExactly(user.getId());
+        // Поток без записей читает с реплики, где пользователя ещё нет
+        assertThat(inOtherThread(() -> userRepository.findPage(afterId, 1))).isEmpty();
+
+        awaitReplicas();
+        List<Replica> replicas = dataSource.unwrap(ReplicaRoutingDataSource.class).getReplicas();
+        long readsBefore = replicas.stream().mapToLong(Replica::getReads).sum();
+        for (int i = 0; i < replicas.size(); i++) {
+            assertThat(inOtherThread(() -> userRepository.findPage(afterId, 1)))
+                    .extracting(User::getId).containsExactly(user.getId());
+        }
+        assertThat(replicas).allSatisfy(replica -> assertThat(replica.getReads()).isPositive());
+        assertThat(replicas.stream().mapToLong(Replica::getReads).sum() - readsBefore).isEqualTo(replicas.size());
+    }
+
+    @Test
+    @DisplayName("Откаченная транзакция не попадает на реплики")
+    void shouldNotReplicateRolledBackTransaction() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.create(newUser("rolledback"));
+            status.setRollbackOnly();
+        });
+        User committed = userRepository.create(newUser("committed"));
+
+        awaitReplicas();
+        Integer primaryUsers = jdbc.queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+        List<User> replicaUsers = inOtherThread(() -> userRepository.findAll());
+        assertThat(replicaUsers).hasSize(primaryUsers);
+        assertThat(replicaUsers).extracting(User::getLogin).contains("committed").doesNotContain("rolledback");
+        assertThat(dataSource.unwrap(ReplicaRoutingDataSource.class).getReplicas())
+                .noneMatch(Replica::isFailed);
+        assertThat(committed.getId()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Фильм по id после обновления не отдаётся со старым телом, пока реплики отстают")
+    void shouldNotServeStaleFilmUnderNewEtag() throws Exception {
+        String created = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(FILM_JSON.formatted("", "before")))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = ((Number) JsonPath.read(created, "$.id")).longValue();
+        awaitReplicas();
+        assertThat(inOtherThread(() -> getFilm(id)).getContentAsString()).contains("\"before\"");
+
+        // Реплики отстают на секунду: другой поток читает сразу после обновления
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(FILM_JSON.formatted("\"id\":" + id + ",", "after")))
+                .andExpect(status().isOk());
+        MockHttpServletResponse response = inOtherThread(() -> getFilm(id));
+
+        assertThat(response.getContentAsString()).contains("\"after\"").doesNotContain("\"before\"");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(versions.filmTag(id));
+        assertThat(inOtherThread(() -> getFilm(id)).getContentAsString()).contains("\"after\"");
+    }
+
+    private MockHttpServletResponse getFilm(long id) {
+        try {
+            MvcResult started = mockMvc.perform(get("/films/" + id)).andReturn();
+            return mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn().getResponse();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void awaitReplicas() throws SQLException, InterruptedException {
+        long position = dataSource.unwrap(ReplicatingDataSource.class).getPosition();
+        List<Replica> replicas = dataSource.unwrap(ReplicaRoutingDataSource.class).getReplicas();
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (replicas.stream().anyMatch(replica -> replica.getAppliedPosition() < position)) {
+            assertThat(System.nanoTime()).as("реплики не догнали основную базу").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static <T> T inOtherThread(Supplier<T> read) {
+        return CompletableFuture.supplyAsync(read, runnable -> new Thread(runnable).start()).join();
+    }
+
+    private static User newUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
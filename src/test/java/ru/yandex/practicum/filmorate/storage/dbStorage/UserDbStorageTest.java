@@ -10,6 +10,8 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.friendship.FriendshipRepository;
 import ru.yandex.practicum.filmorate.dal.friendship.FriendshipRowMapper;
 import ru.yandex.practicum.filmorate.dal.user.UserRepository;
@@ -17,19 +19,26 @@ import ru.yandex.practicum.filmorate.dal.user.UserRowMapper;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
-@JdbcTest
+@JdbcTest(properties = "spring.datasource.url=jdbc:h2:mem:filmorate-test;DB_CLOSE_DELAY=-1")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
-@Import({UserRepository.class, FriendshipRepository.class})
+@Import({UserRepository.class, FriendshipRepository.class, EntityVersions.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class UserDbStorageTest {
 
     private final UserRepository userStorage;
+    private final EntityVersions versions;
 
     @TestConfiguration
     public static class TestConfig {
@@ -130,4 +139,224 @@ public class UserDbStorageTest {
         assertThat(userStorage.checkId(savedUser.getId())).isTrue();
         assertThat(userStorage.checkId(99999L)).isFalse();
     }
+
+    @Test
+    @DisplayName("Проверка занятости email")
+    void shouldCheckIfEmailExists() {
+        User user = new User();
+        user.setEmail("taken@example.com");
+        user.setLogin("taken");
+        user.setName("Taken");
+        user.setBirthday(LocalDate.of(1985, 1, 1));
+        userStorage.create(user);
+
+        assertThat(userStorage.existsByEmail("taken@example.com")).isTrue();
+        assertThat(userStorage.existsByEmail("free@example.com")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Постраничное получение пользователей по id")
+    void shouldFindUsersPageAfterId() {
+        User first = new User();
+        first.setEmail("page1@example.com");
+        first.setLogin("page1");
+        first.setName("Page One");
+        first.setBirthday(LocalDate.of(1991, 1, 1));
+        userStorage.create(first);
+
+        User second = new User();
+        second.setEmail("page2@example.com");
+        second.setLogin("page2");
+        second.setName("Page Two");
+        second.setBirthday(LocalDate.of(1992, 2, 2));
+        userStorage.create(second);
+
+        User third = new User();
+        third.setEmail("page3@example.com");
+        third.setLogin("page3");
+        third.setName("Page Three");
+        third.setBirthday(LocalDate.of(1993, 3, 3));
+        userStorage.create(third);
+
+        // Получаем страницу из двух пользователей, начиная сразу после id первого
+        Collection<User> page = userStorage.findPage(first.getId(), 2);
+
+        assertThat(page).extracting(User::getId).containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    @DisplayName("Пакетное создание и поиск занятых email и логинов")
+    void shouldCreateUsersInBatchAndFindTakenEmailsOrLogins() {
+        User first = new User();
+        first.setEmail("batch1@example.com");
+        first.setLogin("batch1");
+        first.setName("Batch One");
+        first.setBirthday(LocalDate.of(1994, 4, 4));
+
+        User second = new User();
+        second.setEmail("batch2@example.com");
+        second.setLogin("batch2");
+        second.setName("Batch Two");
+        second.setBirthday(LocalDate.of(1995, 5, 5));
+
+        List<Long> ids = userStorage.createAll(List.of(first, second), (index, message) -> {
+            throw new AssertionError("Строка " + index + " отклонена: " + message);
+        });
+
+        assertThat(ids).containsExactly(first.getId(), second.getId());
+        assertThat(userStorage.findUserById(ids.get(1))).get().extracting(User::getLogin).isEqualTo("batch2");
+        // Первый найден по email, второй по логину, свободные значения ничего не находят
+        assertThat(userStorage.findByEmailsOrLogins(List.of("batch1@example.com", "free@example.com"),
+                List.of("batch2", "free")))
+                .extracting(User::getId)
+                .containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    @DisplayName("Ошибка базы в пачке не отменяет остальные строки: пачка повторяется по одной строке")
+    // Без тестовой транзакции пачка откатывается в своей транзакции, как в приложении
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void shouldRetryFailedBatchRowByRowAndReportRejectedRows() {
+        User taken = new User();
+        taken.setEmail("retry-taken@example.com");
+        taken.setLogin("retryTaken");
+        taken.setName("Taken");
+        taken.setBirthday(LocalDate.of(1990, 1, 1));
+        userStorage.create(taken);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("retry" + i + "@example.com");
+            user.setLogin("retry" + i);
+            user.setName("Retry " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(user);
+        }
+        // Email, занятый после проверки в сервисе, отклоняет только свою строку
+        users.get(1).setEmail(taken.getEmail());
+        Map<Integer, String> rejected = new HashMap<>();
+
+        List<Long> ids = userStorage.createAll(users, rejected::put);
+
+        assertThat(rejected).containsOnlyKeys(1).containsValue("Этот имейл уже использутся");
+        assertThat(ids).hasSize(3);
+        assertThat(ids.get(1)).isNull();
+        assertThat(userStorage.findUserById(ids.get(0))).get().extracting(User::getLogin).isEqualTo("retry0");
+        assertThat(userStorage.findUserById(ids.get(2))).get().extracting(User::getLogin).isEqualTo("retry2");
+        assertThat(userStorage.findByEmailsOrLogins(List.of(), List.of("retry1"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Версия списка друзей меняется при изменении дружбы и пользователей")
+    void shouldChangeFriendsTagOnFriendshipAndUserChanges() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setEmail("tag" + i + "@example.com");
+            user.setLogin("tag" + i);
+            user.setName("Tag " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(userStorage.create(user));
+        }
+        Long userId = users.get(0).getId();
+        Long friendId = users.get(1).getId();
+
+        String initial = versions.friendsTag(userId);
+        String friendInitial = versions.friendsTag(friendId);
+        userStorage.getFriends(userId);
+        assertThat(versions.friendsTag(userId)).isEqualTo(initial);
+
+        userStorage.putFriend(userId, friendId);
+        String afterPut = versions.friendsTag(userId);
+        assertThat(afterPut).isNotEqualTo(initial);
+        assertThat(versions.friendsTag(friendId)).isEqualTo(friendInitial);
+
+        // Друг переименован — его данные есть в списке друзей, поэтому ETag меняется
+        users.get(1).setName("Renamed");
+        userStorage.update(users.get(1));
+        assertThat(versions.friendsTag(userId)).isNotEqualTo(afterPut);
+    }
+
+    @Test
+    @DisplayName("Повторное добавление и удаление друга идемпотентны, неизвестный id даёт NotFoundException")
+    void shouldPutAndDeleteFriendsIdempotently() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setEmail("retry" + i + "@example.com");
+            user.setLogin("retry" + i);
+            user.setName("Retry " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            ids.add(userStorage.create(user).getId());
+        }
+        userStorage.putFriend(ids.get(0), ids.get(1));
+        userStorage.putFriend(ids.get(0), ids.get(1));
+        assertThat(userStorage.getFriends(ids.get(0))).extracting(User::getId).containsExactly(ids.get(1));
+
+        assertThatThrownBy(() -> userStorage.putFriend(ids.get(0), -1L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Пользователь с id = -1 не найден");
+        assertThatThrownBy(() -> userStorage.putFriend(-1L, ids.get(0)))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Пользователь с id = -1 не найден");
+
+        userStorage.deleteFriend(ids.get(0), ids.get(1));
+        userStorage.deleteFriend(ids.get(0), ids.get(1));
+        assertThat(userStorage.getFriends(ids.get(0))).isEmpty();
+        assertThatThrownBy(() -> userStorage.deleteFriend(ids.get(0), -1L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Пользователь с id = -1 не найден");
+    }
+
+    @Test
+    @DisplayName("Друзья и общие друзья из графа дружбы")
+    void shouldFindFriendsAndCommonFriends() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User user = new User();
+            user.setEmail("friend" + i + "@example.com");
+            user.setLogin("friend" + i);
+            user.setName("Friend " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            ids.add(userStorage.create(user).getId());
+        }
+        userStorage.putFriend(ids.get(0), ids.get(3));
+        userStorage.putFriend(ids.get(0), ids.get(2));
+        userStorage.putFriend(ids.get(1), ids.get(2));
+        userStorage.putFriend(ids.get(1), ids.get(3));
+        userStorage.deleteFriend(ids.get(1), ids.get(3));
+
+        assertThat(userStorage.getFriends(ids.get(0))).extracting(User::getId)
+                .containsExactly(ids.get(2), ids.get(3));
+        assertThat(userStorage.getCommonFriends(ids.get(0), ids.get(1))).extracting(User::getLogin)
+                .containsExactly("friend2");
+    }
+
+    @Test
+    @DisplayName("Рекомендации друзей по числу общих друзей")
+    void shouldSuggestFriendsOfFriendsByMutualFriends() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setEmail("suggest" + i + "@example.com");
+            user.setLogin("suggest" + i);
+            user.setName("Suggest " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            ids.add(userStorage.create(user).getId());
+        }
+        userStorage.putFriend(ids.get(0), ids.get(1));
+        userStorage.putFriend(ids.get(0), ids.get(2));
+        userStorage.putFriend(ids.get(1), ids.get(2));
+        userStorage.putFriend(ids.get(1), ids.get(3));
+        userStorage.putFriend(ids.get(1), ids.get(4));
+        userStorage.putFriend(ids.get(2), ids.get(3));
+        userStorage.putFriend(ids.get(2), ids.get(0));
+
+        // Уже добавленный друг и сам пользователь в рекомендации не попадают
+        assertThat(userStorage.getFriendSuggestions(ids.get(0), 10)).extracting(User::getId)
+                .containsExactly(ids.get(3), ids.get(4));
+        assertThat(userStorage.getFriendSuggestions(ids.get(0), 1)).extracting(User::getId)
+                .containsExactly(ids.get(3));
+    }
 }
@@ -0,0 +1,12 @@
+INSERT INTO rating_mpa (name) VALUES ('G');
+INSERT INTO rating_mpa (name) VALUES ('PG');
+INSERT INTO rating_mpa (name) VALUES ('PG-13');
+INSERT INTO rating_mpa (name) VALUES ('R');
+INSERT INTO rating_mpa (name) VALUES ('NC-17');
+
+INSERT INTO genre (name) VALUES ('Комедия');
+INSERT INTO genre (name) VALUES ('Драма');
+INSERT INTO genre (name) VALUES ('Мультфильм');
+INSERT INTO genre (name) VALUES ('Триллер');
+INSERT INTO genre (name) VALUES ('Документальный');
+INSERT INTO genre (name) VALUES ('Боевик');
\ No newline at end of file